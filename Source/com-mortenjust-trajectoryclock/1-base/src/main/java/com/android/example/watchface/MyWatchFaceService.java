@@ -20,20 +20,29 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.graphics.BitmapFactory;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Rect;
-import android.os.Handler;
-import android.os.Message;
 import android.support.wearable.watchface.CanvasWatchFaceService;
 import android.support.wearable.watchface.WatchFaceStyle;
-import android.text.format.Time;
 import android.view.SurfaceHolder;
 
+import com.mortenjust.trajectoryclock.common.BackgroundLoader;
+import com.mortenjust.trajectoryclock.common.BitmapDiskCache;
+import com.mortenjust.trajectoryclock.common.HandSprites;
+import com.mortenjust.trajectoryclock.common.StartupTracer;
+import com.mortenjust.trajectoryclock.common.TickScheduler;
+import com.mortenjust.trajectoryclock.core.FrameStats;
+import com.mortenjust.trajectoryclock.core.HandRotations;
+import com.mortenjust.trajectoryclock.core.StartupTrace;
+import com.mortenjust.trajectoryclock.core.SurfaceReadyStats;
+import com.mortenjust.trajectoryclock.core.WallClock;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.TimeZone;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Analog watch face with a ticking second hand. In ambient mode, the second hand isn't shown. On
@@ -42,41 +51,52 @@ import java.util.concurrent.TimeUnit;
 public class MyWatchFaceService extends CanvasWatchFaceService {
 
     /**
-     * Update rate in milliseconds for interactive mode. We update once a second to advance the
-     * second hand.
+     * Whether to draw the hands from sprites rasterized in onSurfaceChanged instead of drawing
+     * every line on each frame. Flip it to compare frame times on a watch; the render harness
+     * compares both on the host.
      */
-    private static final long INTERACTIVE_UPDATE_RATE_MS = TimeUnit.SECONDS.toMillis(1);
+    private static final boolean USE_HAND_SPRITES = true;
+
+    /**
+     * How the background is decoded, one of the BackgroundLoader.DECODE_ modes. Switch it to
+     * compare the peak heap of loading it.
+     */
+    private static final int BACKGROUND_DECODE = BackgroundLoader.DECODE_AT_SIZE;
 
     @Override
     public Engine onCreateEngine() {
         return new Engine();
     }
 
-    private class Engine extends CanvasWatchFaceService.Engine {
+    class Engine extends CanvasWatchFaceService.Engine {
 
-        bitmap mBackgroundBitMap;
+        /* Ticks once a second in interactive mode, from the wakeup all engines share. */
+        private final TickScheduler.Listener mTickListener = new TickScheduler.Listener() {
+            @Override
+            public void onTick(long scheduledMs, long actualMs) {
+                mFrameStats.recordTick(scheduledMs, actualMs);
+                invalidate();
+            }
+        };
 
-        /* Handler to update the time once a second in interactive mode. */
-        private final Handler mUpdateTimeHandler = new Handler() {
+        /* Swaps in the background scaled for the surface, drawn black until then. */
+        private final BackgroundLoader.Callback mBackgroundCallback =
+                new BackgroundLoader.Callback() {
             @Override
-            public void handleMessage(Message message) {
-                if (R.id.message_update == message.what) {
-                    invalidate();
-                    if (shouldTimerBeRunning()) {
-                        long timeMs = System.currentTimeMillis();
-                        long delayMs = INTERACTIVE_UPDATE_RATE_MS
-                                - (timeMs % INTERACTIVE_UPDATE_RATE_MS);
-                        mUpdateTimeHandler.sendEmptyMessageDelayed(R.id.message_update, delayMs);
-                    }
+            public void onBackgroundLoaded(Bitmap background) {
+                if (mBackgroundBitmap != null) {
+                    mBackgroundLoader.setSpare(mBackgroundBitmap);
                 }
+                mBackgroundBitmap = background;
+                mStartupTracer.milestone("background loaded");
+                invalidate();
             }
         };
 
         private final BroadcastReceiver mTimeZoneReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
-                mTime.clear(intent.getStringExtra("time-zone"));
-                mTime.setToNow();
+                mTimeZone = TimeZone.getTimeZone(intent.getStringExtra("time-zone"));
             }
         };
 
@@ -84,11 +104,22 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
 
         private static final float STROKE_WIDTH = 3f;
 
-        private Time mTime;
+        private TimeZone mTimeZone = TimeZone.getDefault();
+        private final HandRotations mRotations = new HandRotations();
 
         private Paint mBackgroundPaint;
         private Paint mHandPaint;
 
+        private Bitmap mBackgroundBitmap;
+        private BackgroundLoader mBackgroundLoader;
+
+        private boolean mUseHandSprites = USE_HAND_SPRITES;
+        private HandSprites mHandSprites;
+        private final FrameStats mFrameStats = new FrameStats("background", "hands");
+        private final SurfaceReadyStats mSurfaceReadyStats = new SurfaceReadyStats();
+        /* Created with the engine, in onCreateEngine, and finished by the first frame. */
+        private final StartupTracer mStartupTracer = new StartupTracer("1-base");
+
         private boolean mAmbient;
 
         private float mHourHandLength;
@@ -104,14 +135,19 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
         public void onCreate(SurfaceHolder holder) {
             super.onCreate(holder);
 
-            mBackgroundBitMap = BitmapFactory.decodeResource(getResources(), R.drawable.custom_background);
+            mStartupTracer.begin("background loader");
+            mBackgroundLoader = new BackgroundLoader(getResources(), R.drawable.custom_background,
+                    BACKGROUND_DECODE, BitmapDiskCache.getInstance(MyWatchFaceService.this),
+                    mBackgroundCallback);
 
+            mStartupTracer.begin("style");
             setWatchFaceStyle(new WatchFaceStyle.Builder(MyWatchFaceService.this)
                     .setCardPeekMode(WatchFaceStyle.PEEK_MODE_SHORT)
                     .setBackgroundVisibility(WatchFaceStyle.BACKGROUND_VISIBILITY_INTERRUPTIVE)
                     .setShowSystemUiTime(false)
                     .build());
 
+            mStartupTracer.begin("paints");
             mBackgroundPaint = new Paint();
             mBackgroundPaint.setColor(Color.BLACK);
 
@@ -120,13 +156,21 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
             mHandPaint.setStrokeWidth(STROKE_WIDTH);
             mHandPaint.setAntiAlias(true);
             mHandPaint.setStrokeCap(Paint.Cap.ROUND);
-
-            mTime = new Time();
+            mStartupTracer.end();
         }
 
         @Override
         public void onDestroy() {
-            mUpdateTimeHandler.removeMessages(R.id.message_update);
+            TickScheduler.getInstance().unsubscribe(mTickListener);
+            if (mHandSprites != null) {
+                mHandSprites.recycle();
+                mHandSprites = null;
+            }
+            mBackgroundLoader.release();
+            if (mBackgroundBitmap != null) {
+                mBackgroundBitmap.recycle();
+                mBackgroundBitmap = null;
+            }
             super.onDestroy();
         }
 
@@ -154,6 +198,8 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
         @Override
         public void onSurfaceChanged(SurfaceHolder holder, int format, int width, int height) {
             super.onSurfaceChanged(holder, format, width, height);
+            mSurfaceReadyStats.onSurfaceChanged(System.nanoTime());
+            mStartupTracer.begin("surface");
             mWidth = width;
             mHeight = height;
             /*
@@ -171,30 +217,62 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
             mMinuteHandLength = mCenterX - 40;
             mSecondHandLength = mCenterX - 20;
 
-            float mScale = ((float) width) / (float) mBackgroundBitmap.getWidth();
-            mBackgroundBitmap = Bitmap.createScaledBitmap(mBackgroundBitmap,
-            (int)(mBackgroundBitmap.getWidth() * mScale),
-            (int)(mBackgroundBitmap.getHeight() * mScale), true);
+            // Decoding and scaling take longer than a frame; until the loader delivers, frames
+            // keep the background we have, or draw black if there is none.
+            if (mBackgroundBitmap != null && mBackgroundBitmap.getWidth() == width) {
+                mBackgroundLoader.cancel();
+            } else {
+                mBackgroundLoader.load(width, height);
+            }
+
+            if (mHandSprites != null) {
+                mHandSprites.recycle();
+                mHandSprites = null;
+            }
+            // Only rasterized when they are drawn, so they don't hold up the first frame.
+            if (mUseHandSprites) {
+                mStartupTracer.begin("hand sprites");
+                mHandSprites = HandSprites.lineHands(mHourHandLength, mMinuteHandLength,
+                        mSecondHandLength, mHandPaint);
+            }
+            mStartupTracer.end();
         }
 
         @Override
         public void onDraw(Canvas canvas, Rect bounds) {
-            mTime.setToNow();
+            mStartupTracer.begin("first frame");
+            mFrameStats.beginFrame();
+            long nowMs = WallClock.currentTimeMillis();
+            mRotations.setLocalTime(nowMs + mTimeZone.getOffset(nowMs));
 
             // Draw the background.
             //canvas.drawRect(0, 0, canvas.getWidth(), canvas.getHeight(), mBackgroundPaint);
-            canvas.drawBitmap(mBackgroundBitmap, 0, 0, mBackgroundPaint);
+            if (mBackgroundBitmap == null) {
+                canvas.drawColor(Color.BLACK);
+            } else {
+                canvas.drawBitmap(mBackgroundBitmap, 0, 0, mBackgroundPaint);
+            }
+            mFrameStats.endPhase();
 
-            /*
-             * These calculations reflect the rotation in degrees per unit of
-             * time, e.g. 360 / 60 = 6 and 360 / 12 = 30
-             */
-            final float secondsRotation = mTime.second * 6f;
-            final float minutesRotation = mTime.minute * 6f;
-            // account for the offset of the hour hand due to minutes of the hour.
-            final float hourHandOffset = mTime.minute / 2f;
-            final float hoursRotation = (mTime.hour * 30) + hourHandOffset;
+            final float secondsRotation = mRotations.secondsRotation;
+            final float minutesRotation = mRotations.minutesRotation;
+            final float hoursRotation = mRotations.hoursRotation;
+
+            if (mUseHandSprites) {
+                mHandSprites.draw(canvas, hoursRotation, minutesRotation, secondsRotation,
+                        !mAmbient, mCenterX, mCenterY);
+            } else {
+                drawHands(canvas, hoursRotation, minutesRotation, secondsRotation);
+            }
+            mFrameStats.endPhase();
+            mFrameStats.endFrame();
+            mSurfaceReadyStats.onFrame(System.nanoTime(),
+                    mBackgroundBitmap != null && !mBackgroundLoader.isLoading());
+            mStartupTracer.finish();
+        }
 
+        private void drawHands(Canvas canvas, float hoursRotation, float minutesRotation,
+                float secondsRotation) {
             // save the canvas state before we begin to rotate it
             canvas.save();
 
@@ -213,6 +291,39 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
             canvas.restore();
         }
 
+        /**
+         * Returns the phases of this engine's startup so far, for the startup test.
+         */
+        StartupTrace getStartupTrace() {
+            return mStartupTracer.getTrace();
+        }
+
+        /**
+         * Switches between sprites and shapes, for the render harness to compare the two.
+         */
+        void setUseHandSprites(boolean useHandSprites) {
+            mUseHandSprites = useHandSprites;
+            if (useHandSprites && mHandSprites == null && mWidth != 0) {
+                mHandSprites = HandSprites.lineHands(mHourHandLength, mMinuteHandLength,
+                        mSecondHandLength, mHandPaint);
+            }
+        }
+
+        @Override
+        protected void dump(String prefix, FileDescriptor fd, PrintWriter out, String[] args) {
+            super.dump(prefix, fd, out, args);
+            out.print(prefix);
+            out.println("frameMode=" + (mUseHandSprites ? "sprites" : "shapes"));
+            mFrameStats.dump(prefix, out);
+            out.print(prefix);
+            out.println("tickScheduler:");
+            TickScheduler.getInstance().dump(prefix + "  ", out);
+            mSurfaceReadyStats.dump(prefix, out);
+            mStartupTracer.dump(prefix, out);
+            mBackgroundLoader.dump(prefix, out);
+            BitmapDiskCache.getInstance(MyWatchFaceService.this).dump(prefix, out);
+        }
+
         @Override
         public void onVisibilityChanged(boolean visible) {
             super.onVisibilityChanged(visible);
@@ -221,8 +332,7 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
                 registerReceiver();
 
                 // Update time zone in case it changed while we weren't visible.
-                mTime.clear(TimeZone.getDefault().getID());
-                mTime.setToNow();
+                mTimeZone = TimeZone.getDefault();
             } else {
                 unregisterReceiver();
             }
@@ -253,15 +363,19 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
         }
 
         private void updateTimer() {
-            mUpdateTimeHandler.removeMessages(R.id.message_update);
             if (shouldTimerBeRunning()) {
-                mUpdateTimeHandler.sendEmptyMessage(R.id.message_update);
+                // Subscribing again is a no-op, so only a new subscription draws right away.
+                if (TickScheduler.getInstance().subscribe(mTickListener)) {
+                    invalidate();
+                }
+            } else {
+                TickScheduler.getInstance().unsubscribe(mTickListener);
             }
         }
 
         /**
-         * Returns whether the {@link #mUpdateTimeHandler} timer should be running. The timer
-         * should only run when we're visible and in interactive mode.
+         * Returns whether the engine should get ticks from the {@link TickScheduler}, which
+         * is only while we're visible and in interactive mode.
          */
         private boolean shouldTimerBeRunning() {
             return isVisible() && !isInAmbientMode();
@@ -0,0 +1,28 @@
+package com.android.example.watchface;
+
+import android.support.wearable.watchface.CanvasWatchFaceService;
+
+import com.mortenjust.trajectoryclock.core.StartupTrace;
+import com.mortenjust.trajectoryclock.harness.WatchFaceRenderTest;
+
+/**
+ * Runs the render harness against the 1-base engine.
+ */
+public class RenderHarnessTest extends WatchFaceRenderTest {
+
+    public RenderHarnessTest() {
+        super("1-base", MyWatchFaceService.class);
+    }
+
+    @Override
+    protected StartupTrace getStartupTrace(CanvasWatchFaceService.Engine engine) {
+        return ((MyWatchFaceService.Engine) engine).getStartupTrace();
+    }
+
+    @Override
+    protected boolean setUseHandSprites(CanvasWatchFaceService.Engine engine,
+            boolean useHandSprites) {
+        ((MyWatchFaceService.Engine) engine).setUseHandSprites(useHandSprites);
+        return true;
+    }
+}
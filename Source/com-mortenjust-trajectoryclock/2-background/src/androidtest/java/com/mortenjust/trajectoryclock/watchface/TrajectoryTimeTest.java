@@ -0,0 +1,36 @@
+package com.mortenjust.trajectoryclock;
+
+import android.os.Debug;
+import android.test.AndroidTestCase;
+
+import com.mortenjust.trajectoryclock.core.TrajectoryTime;
+
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks that the per-frame time math is allocation free on the device once it has warmed up.
+ * The math itself is covered by the host tests in the core module.
+ */
+public class TrajectoryTimeTest extends AndroidTestCase {
+
+    private static final int FRAMES = 600;
+
+    public void testSteadyStateFrameDoesNotAllocate() {
+        TrajectoryTime trajectoryTime = new TrajectoryTime(75);
+        TimeZone timeZone = TimeZone.getDefault();
+
+        long nowMs = System.currentTimeMillis();
+        // Warm up so that any lazy zone data is loaded before we start counting.
+        trajectoryTime.update(nowMs, timeZone);
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        for (int i = 0; i < FRAMES; i++) {
+            trajectoryTime.update(nowMs + TimeUnit.SECONDS.toMillis(i), timeZone);
+        }
+        Debug.stopAllocCounting();
+
+        assertEquals(0, Debug.getThreadAllocCount());
+    }
+}
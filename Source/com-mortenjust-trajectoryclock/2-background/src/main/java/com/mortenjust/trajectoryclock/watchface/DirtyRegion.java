@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mortenjust.trajectoryclock;
+
+import android.graphics.Rect;
+
+/**
+ * The part of the screen a tick has to redraw when only the second hands moved: the rectangle
+ * they covered on the last frame plus the one they cover now. A new minute, a new ETA or any
+ * other change since the last full frame needs a full frame instead. Also counts the pixels
+ * each kind of frame touched.
+ */
+final class DirtyRegion {
+
+    private final Rect mLastHandsBounds = new Rect();
+    private final Rect mHandsBounds = new Rect();
+    private final Rect mDirty = new Rect();
+
+    private boolean mValid;
+    private long mMinuteKey;
+    private long mEtaOffsetMs;
+
+    private long mFullFrameCount;
+    private long mFullFramePixels;
+    private long mDirtyFrameCount;
+    private long mDirtyFramePixels;
+
+    /**
+     * Forces the next frame to be a full one, e.g. after the time zone or the surface changed.
+     */
+    void invalidate() {
+        mValid = false;
+    }
+
+    /**
+     * Records a frame that redrew the whole surface. {@code handsBounds} is where it drew the
+     * second hands; pass null if it drew none, e.g. in ambient mode, so that the next frame is a
+     * full one too.
+     */
+    void onFullFrame(int width, int height, long minuteKey, long etaOffsetMs,
+            Rect handsBounds) {
+        mFullFrameCount++;
+        mFullFramePixels += (long) width * height;
+        mValid = handsBounds != null;
+        if (mValid) {
+            mMinuteKey = minuteKey;
+            mEtaOffsetMs = etaOffsetMs;
+            mLastHandsBounds.set(handsBounds);
+        }
+    }
+
+    /**
+     * Returns the rectangle to redraw for a tick that draws the second hands within
+     * {@code handsBounds}, or null if the tick needs a full frame. The caller may grow the
+     * returned rectangle, as {@code SurfaceHolder.lockCanvas} does, before passing it to
+     * {@link #endDirtyFrame}.
+     */
+    Rect beginDirtyFrame(long minuteKey, long etaOffsetMs, Rect handsBounds) {
+        if (!mValid || minuteKey != mMinuteKey || etaOffsetMs != mEtaOffsetMs) {
+            return null;
+        }
+        mHandsBounds.set(handsBounds);
+        mDirty.set(mLastHandsBounds);
+        mDirty.union(handsBounds);
+        return mDirty;
+    }
+
+    void endDirtyFrame(Rect dirty) {
+        mDirtyFrameCount++;
+        mDirtyFramePixels += (long) dirty.width() * dirty.height();
+        mLastHandsBounds.set(mHandsBounds);
+    }
+
+    long getFullFrameCount() {
+        return mFullFrameCount;
+    }
+
+    long getDirtyFrameCount() {
+        return mDirtyFrameCount;
+    }
+
+    long getMeanFullFramePixels() {
+        return mFullFrameCount == 0 ? 0 : mFullFramePixels / mFullFrameCount;
+    }
+
+    long getMeanDirtyFramePixels() {
+        return mDirtyFrameCount == 0 ? 0 : mDirtyFramePixels / mDirtyFrameCount;
+    }
+}
@@ -21,68 +21,198 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Rect;
-import android.os.Handler;
-import android.os.Message;
+import android.graphics.RectF;
+import android.os.BatteryManager;
 import android.support.wearable.watchface.CanvasWatchFaceService;
 import android.support.wearable.watchface.WatchFaceStyle;
-import android.text.format.Time;
+import android.view.Choreographer;
 import android.view.SurfaceHolder;
 
-import java.util.Calendar;
+import com.mortenjust.trajectoryclock.common.BackgroundLoader;
+import com.mortenjust.trajectoryclock.common.BitmapDiskCache;
+import com.mortenjust.trajectoryclock.common.HandSprites;
+import com.mortenjust.trajectoryclock.common.MinuteLayer;
+import com.mortenjust.trajectoryclock.common.StartupTracer;
+import com.mortenjust.trajectoryclock.common.TickScheduler;
+import com.mortenjust.trajectoryclock.core.AmbientWakeStats;
+import com.mortenjust.trajectoryclock.core.EtaProvider;
+import com.mortenjust.trajectoryclock.core.EtaSource;
+import com.mortenjust.trajectoryclock.core.FixedEtaProvider;
+import com.mortenjust.trajectoryclock.core.FramePacer;
+import com.mortenjust.trajectoryclock.core.FrameStats;
+import com.mortenjust.trajectoryclock.core.HandGeometry;
+import com.mortenjust.trajectoryclock.core.HandRotations;
+import com.mortenjust.trajectoryclock.core.StartupTrace;
+import com.mortenjust.trajectoryclock.core.SurfaceReadyStats;
+import com.mortenjust.trajectoryclock.core.TrajectoryTime;
+import com.mortenjust.trajectoryclock.core.WallClock;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
-import static java.util.Calendar.MINUTE;
-import java.util.Date;
 
 /**
- * Analog watch face with a ticking second hand. In ambient mode, the second hand isn't shown. On
- * devices with low-bit ambient mode, the hands are drawn without anti-aliasing in ambient mode.
+ * Analog watch face with a ticking or sweeping second hand. In ambient mode, the second hand
+ * isn't shown. On devices with low-bit ambient mode, the hands are drawn without anti-aliasing
+ * in ambient mode.
  */
 public class MyWatchFaceService extends CanvasWatchFaceService {
 
     /**
-     * Update rate in milliseconds for interactive mode. We update once a second to advance the
-     * second hand.
+     * Minutes added to the current time to get the trajectory hands until the ETA provider has
+     * answered, or when its answer is too old.
      */
-    private static final long INTERACTIVE_UPDATE_RATE_MS = TimeUnit.SECONDS.toMillis(1);
+    private static final int ETA_MINUTES = 75;
+    /**
+     * How old an ETA may get before the provider is asked again, and before it is not drawn.
+     */
+    private static final long ETA_REFRESH_MS = TimeUnit.MINUTES.toMillis(5);
+    private static final long ETA_STALE_MS = TimeUnit.MINUTES.toMillis(30);
+
+    /**
+     * Rotate the canvas for every hand and draw its shape, blurring the shadow each time.
+     */
+    private static final int HANDS_ROTATED_SHAPES = 0;
+    /**
+     * Blit sprites rasterized in onSurfaceChanged through a rotation matrix.
+     */
+    private static final int HANDS_SPRITES = 1;
+    /**
+     * Draw round-capped lines to endpoints looked up in a table filled in onSurfaceChanged.
+     */
+    private static final int HANDS_GEOMETRY_TABLE = 2;
+
+    private static final String[] HAND_DRAWING_NAMES = {"shapes", "sprites", "table"};
+
+    /**
+     * How the hands are drawn. Switch it to compare frame times.
+     */
+    private static final int HAND_DRAWING = HANDS_SPRITES;
+
+    /**
+     * Whether to keep the background and the hour and minute hands in a layer that is only
+     * redrawn when the current or the trajectory minute or the ETA changes. Flip it to compare
+     * frame times.
+     */
+    private static final boolean USE_MINUTE_LAYER = true;
+
+    /**
+     * Whether the second hands sweep instead of ticking. A sweep frame is drawn by the same code
+     * as a tick, only more often, so the frame stats of the two modes compare directly.
+     */
+    private static final boolean SWEEP_SECOND_HAND = false;
+
+    /**
+     * Frame rates the sweep can run at, fastest first. They all divide 60, so on a 60 Hz display
+     * every frame lands on a vsync.
+     */
+    private static final int[] SWEEP_FRAME_RATES = {30, 15, 10};
+
+    /**
+     * Mean draw time above which the sweep drops to a slower frame rate.
+     */
+    private static final long SWEEP_FRAME_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(8);
+
+    /**
+     * Battery level at or below which the sweep runs at its slowest rate, unless charging.
+     */
+    private static final int LOW_BATTERY_PERCENT = 20;
+
+    /**
+     * Whether a tick only redraws the rectangle the second hands move through instead of the
+     * whole face. It relies on the minute layer for the rest of the face and on the hands
+     * ticking, and is off otherwise. Flip it to compare frame times.
+     */
+    private static final boolean USE_DIRTY_REGIONS = false;
+
+    private static final boolean DIRTY_REGIONS = USE_DIRTY_REGIONS && USE_MINUTE_LAYER
+            && !SWEEP_SECOND_HAND;
+
+    /**
+     * How the background is decoded, one of the BackgroundLoader.DECODE_ modes. Switch it to
+     * compare the peak heap of loading it.
+     */
+    private static final int BACKGROUND_DECODE = BackgroundLoader.DECODE_AT_SIZE;
+
+    private static final String FRAME_MODE = HAND_DRAWING_NAMES[HAND_DRAWING]
+            + (USE_MINUTE_LAYER ? "+layer" : "") + (SWEEP_SECOND_HAND ? "+sweep" : "")
+            + (DIRTY_REGIONS ? "+dirty" : "");
 
     @Override
     public Engine onCreateEngine() {
         return new Engine();
     }
 
-    private class Engine extends CanvasWatchFaceService.Engine {
+    class Engine extends CanvasWatchFaceService.Engine {
 
         private static final float HAND_END_CAP_RADIUS = 4f;
         private static final float SHADOW_RADIUS = 6f;
 
+        /* Created with the engine, in onCreateEngine, and finished by the first frame. */
+        private final StartupTracer mStartupTracer = new StartupTracer("2-background");
 
-        /* Handler to update the time once a second in interactive mode. */
-        private final Handler mUpdateTimeHandler = new Handler() {
+        /* Ticks once a second in interactive mode, from the wakeup all engines share. */
+        private final TickScheduler.Listener mTickListener = new TickScheduler.Listener() {
             @Override
-            public void handleMessage(Message message) {
-                if (R.id.message_update == message.what) {
+            public void onTick(long scheduledMs, long actualMs) {
+                mFrameStats.recordTick(scheduledMs, actualMs);
+                drawTick();
+            }
+        };
+
+        /* Invalidates on the vsyncs the pacer picks while the second hands sweep. */
+        private final Choreographer.FrameCallback mSweepFrameCallback =
+                new Choreographer.FrameCallback() {
+            @Override
+            public void doFrame(long frameTimeNanos) {
+                if (!mSweeping) {
+                    return;
+                }
+                if (mFramePacer.onVsync(frameTimeNanos)) {
                     invalidate();
-                    if (shouldTimerBeRunning()) {
-                        long timeMs = System.currentTimeMillis();
-                        long delayMs = INTERACTIVE_UPDATE_RATE_MS
-                                - (timeMs % INTERACTIVE_UPDATE_RATE_MS);
-                        mUpdateTimeHandler.sendEmptyMessageDelayed(R.id.message_update, delayMs);
-                    }
                 }
+                Choreographer.getInstance().postFrameCallback(this);
+            }
+        };
+
+        private final BroadcastReceiver mBatteryReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                int level = intent.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+                int scale = intent.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+                boolean charging = intent.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+                mFramePacer.setLowBattery(!charging && level >= 0 && scale > 0
+                        && level * 100 / scale <= LOW_BATTERY_PERCENT);
+            }
+        };
+
+        /* Swaps in the background scaled for the surface, drawn black until then. */
+        private final BackgroundLoader.Callback mBackgroundCallback =
+                new BackgroundLoader.Callback() {
+            @Override
+            public void onBackgroundLoaded(Bitmap background) {
+                if (mBackgroundBitmap != null) {
+                    mBackgroundLoader.setSpare(mBackgroundBitmap);
+                }
+                mBackgroundBitmap = background;
+                mStartupTracer.milestone("background loaded");
+                mMinuteLayer.invalidate();
+                mDirtyRegion.invalidate();
+                invalidate();
             }
         };
 
         private final BroadcastReceiver mTimeZoneReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
-                mTime.clear(intent.getStringExtra("time-zone"));
-                mTime.setToNow();
+                mTimeZone = TimeZone.getTimeZone(intent.getStringExtra("time-zone"));
+                mMinuteLayer.invalidate();
+                mDirtyRegion.invalidate();
             }
         };
 
@@ -90,15 +220,37 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
 
         private static final float STROKE_WIDTH = 2f;
 
-        private Time mTime;
+        private TimeZone mTimeZone = TimeZone.getDefault();
+        private TrajectoryTime mTrajectoryTime;
+        private EtaSource mEtaSource;
 
         private Paint mBackgroundPaint;
         private Paint mHandPaint;
         private Paint trajectoryHandPaint;
+        private Paint mHandLinePaint;
+        private Paint mTrajectoryHandLinePaint;
 
         private boolean mAmbient;
 
         private Bitmap mBackgroundBitmap;
+        private BackgroundLoader mBackgroundLoader;
+
+        private HandSprites mHandSprites;
+        private HandSprites mTrajectoryHandSprites;
+        private final HandGeometry mHandGeometry = new HandGeometry();
+        private final MinuteLayer mMinuteLayer = new MinuteLayer();
+        private final AmbientWakeStats mAmbientWakeStats = new AmbientWakeStats();
+        private final Rect mCardBounds = new Rect();
+        private final FrameStats mFrameStats = new FrameStats("background", "trajectory hands",
+                "current hands");
+        private final FramePacer mFramePacer = new FramePacer(SWEEP_FRAME_BUDGET_NANOS,
+                SWEEP_FRAME_RATES);
+        private boolean mSweeping;
+        private final DirtyRegion mDirtyRegion = new DirtyRegion();
+        private final Rect mSecondHandsBounds = new Rect();
+        private final RectF mSecondHandsBoundsF = new RectF();
+        private boolean mDrawingDirtyRegion;
+        private final SurfaceReadyStats mSurfaceReadyStats = new SurfaceReadyStats();
 
         private float mHourHandLength;
         private float mMinuteHandLength;
@@ -108,26 +260,26 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
         private int mHeight;
         private float mCenterX;
         private float mCenterY;
-        private float mScale = 1;
 
         @Override
         public void onCreate(SurfaceHolder holder) {
             super.onCreate(holder);
 
+            mStartupTracer.begin("style");
             setWatchFaceStyle(new WatchFaceStyle.Builder(MyWatchFaceService.this)
                     .setCardPeekMode(WatchFaceStyle.PEEK_MODE_SHORT)
                     .setBackgroundVisibility(WatchFaceStyle.BACKGROUND_VISIBILITY_INTERRUPTIVE)
                     .setShowSystemUiTime(false)
                     .build());
 
+            mStartupTracer.begin("paints");
             mBackgroundPaint = new Paint();
             mBackgroundPaint.setColor(Color.BLACK);
 
             final int backgroundResId = R.drawable.custom_background;
-
-
-
-            mBackgroundBitmap = BitmapFactory.decodeResource(getResources(), backgroundResId);
+            mBackgroundLoader = new BackgroundLoader(getResources(), backgroundResId,
+                    BACKGROUND_DECODE, BitmapDiskCache.getInstance(MyWatchFaceService.this),
+                    mBackgroundCallback);
 
             mHandPaint = new Paint();
             mHandPaint.setColor(Color.WHITE);
@@ -142,12 +294,44 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
             trajectoryHandPaint.setAntiAlias(true);
             trajectoryHandPaint.setAlpha(150);
             trajectoryHandPaint.setStrokeCap(Paint.Cap.ROUND);
-            mTime = new Time();
+
+            // Only the geometry table draws hands as lines.
+            if (HAND_DRAWING == HANDS_GEOMETRY_TABLE) {
+                mHandLinePaint = newHandLinePaint(mHandPaint);
+                mTrajectoryHandLinePaint = newHandLinePaint(trajectoryHandPaint);
+            }
+            mTrajectoryTime = new TrajectoryTime(ETA_MINUTES);
+            mEtaSource = new EtaSource(newEtaProvider(), ETA_REFRESH_MS, ETA_STALE_MS,
+                    TimeUnit.MINUTES.toMillis(ETA_MINUTES));
+            mStartupTracer.end();
+        }
+
+        /**
+         * A round-capped line as wide as a hand covers exactly the rounded rectangle that
+         * {@link #drawHand} draws, so the geometry table can draw hands as lines.
+         */
+        private Paint newHandLinePaint(Paint handPaint) {
+            Paint paint = new Paint(handPaint);
+            paint.setStyle(Paint.Style.STROKE);
+            paint.setStrokeWidth(2 * HAND_END_CAP_RADIUS);
+            paint.setStrokeCap(Paint.Cap.ROUND);
+            return paint;
         }
 
         @Override
         public void onDestroy() {
-            mUpdateTimeHandler.removeMessages(R.id.message_update);
+            TickScheduler.getInstance().unsubscribe(mTickListener);
+            if (mSweeping) {
+                Choreographer.getInstance().removeFrameCallback(mSweepFrameCallback);
+                mSweeping = false;
+            }
+            recycleHandSprites();
+            mMinuteLayer.recycle();
+            mBackgroundLoader.release();
+            if (mBackgroundBitmap != null) {
+                mBackgroundBitmap.recycle();
+                mBackgroundBitmap = null;
+            }
             super.onDestroy();
         }
 
@@ -162,6 +346,10 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
             super.onAmbientModeChanged(inAmbientMode);
             if (mAmbient != inAmbientMode) {
                 mAmbient = inAmbientMode;
+                mDirtyRegion.invalidate();
+                if (!inAmbientMode) {
+                    mAmbientWakeStats.endMinute();
+                }
                 invalidate();
             }
 
@@ -175,6 +363,7 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
         @Override
         public void onSurfaceChanged(SurfaceHolder holder, int format, int width, int height) {
             super.onSurfaceChanged(holder, format, width, height);
+            mSurfaceReadyStats.onSurfaceChanged(System.nanoTime());
             mWidth = width;
             mHeight = height;
             /*
@@ -185,82 +374,289 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
              */
             mCenterX = mWidth / 2f;
             mCenterY = mHeight / 2f;
-            mScale = ((float) width) / (float) mBackgroundBitmap.getWidth();
             /*
              * Calculate the lengths of the watch hands and store them in member variables.
              */
 
+            mStartupTracer.begin("surface");
             mHourHandLength = 0.5f * width / 2;
             mMinuteHandLength = 0.7f * width / 2;
             mSecondHandLength = 0.9f * width / 2;
 
-            mBackgroundBitmap = Bitmap.createScaledBitmap(mBackgroundBitmap,
-                    (int) (mBackgroundBitmap.getWidth() * mScale),
-                    (int) (mBackgroundBitmap.getHeight() * mScale), true);
+            // Decoding and scaling take longer than a frame; until the loader delivers, frames
+            // keep the background we have, or draw black if there is none.
+            if (mBackgroundBitmap != null && mBackgroundBitmap.getWidth() == width) {
+                mBackgroundLoader.cancel();
+            } else {
+                mBackgroundLoader.load(width, height);
+            }
+
+            // Only what the chosen hand drawing uses is built, so the others don't hold up the
+            // first frame.
+            recycleHandSprites();
+            if (HAND_DRAWING == HANDS_SPRITES) {
+                mStartupTracer.begin("hand sprites");
+                mHandSprites = HandSprites.roundHands(mHourHandLength, mMinuteHandLength,
+                        mSecondHandLength, HAND_END_CAP_RADIUS, SHADOW_RADIUS, mHandPaint);
+                mTrajectoryHandSprites = HandSprites.roundHands(mHourHandLength,
+                        mMinuteHandLength, mSecondHandLength, HAND_END_CAP_RADIUS, 0,
+                        trajectoryHandPaint);
+            }
+
+            // The dirty region bounds come from the table as well.
+            if (HAND_DRAWING == HANDS_GEOMETRY_TABLE || DIRTY_REGIONS) {
+                mStartupTracer.begin("hand geometry");
+                // The line paints have round caps, so the lines stop a cap radius short.
+                mHandGeometry.setUp(mCenterX, mCenterY, mHourHandLength - HAND_END_CAP_RADIUS,
+                        mMinuteHandLength - HAND_END_CAP_RADIUS, HAND_END_CAP_RADIUS,
+                        mSecondHandLength);
+            }
+
+            if (USE_MINUTE_LAYER) {
+                mMinuteLayer.setSize(width, height);
+            }
+            mDirtyRegion.invalidate();
+            mStartupTracer.end();
         }
 
-        class handRotations {
-            public float secondsRotation;
-            public float hoursRotation;
-            public float minutesRotation;
-            public float hourHandOffset;
+        private EtaProvider newEtaProvider() {
+            return new FixedEtaProvider(TimeUnit.MINUTES.toMillis(ETA_MINUTES));
         }
 
-        public handRotations getRotationsForTime(Time t) {
-            handRotations r = new handRotations();
-            r.secondsRotation = t.second * 6f;
-            r.minutesRotation = t.minute * 6f;
-            r.hourHandOffset = t.minute / 2f;
-            r.hoursRotation = (t.hour * 30) + r.hourHandOffset;
-            return r;
+        /**
+         * Moves the trajectory time to now with the latest ETA, asking the provider for a new
+         * one if it is due. Never waits for the provider; a new ETA shows from the next frame.
+         */
+        private void updateTrajectoryTime() {
+            long nowMs = WallClock.currentTimeMillis();
+            mEtaSource.refreshIfDue(nowMs);
+            mTrajectoryTime.setEtaOffsetMs(mEtaSource.getTravelTimeMs(nowMs));
+            mTrajectoryTime.update(nowMs, mTimeZone);
         }
 
-        Time addMinutesToTime(Time t, Integer addMinutes){
-            Time resultTime = new Time();
-            Calendar c = Calendar.getInstance();
-            c.setTimeInMillis(t.toMillis(false));
-            c.add(MINUTE, addMinutes);
-            resultTime.set(c.getTimeInMillis());
-            return resultTime;
+        private void recycleHandSprites() {
+            if (mHandSprites != null) {
+                mHandSprites.recycle();
+                mHandSprites = null;
+            }
+            if (mTrajectoryHandSprites != null) {
+                mTrajectoryHandSprites.recycle();
+                mTrajectoryHandSprites = null;
+            }
         }
 
         @Override
         public void onDraw(Canvas canvas, Rect bounds) {
-            mTime.setToNow();
+            // Nothing in here may allocate, but for logging the startup trace after the first
+            // frame and taking in a new ETA every few minutes; onDraw runs at least once a
+            // second.
+            mStartupTracer.begin("first frame");
+            mFrameStats.beginFrame();
+            if (!mDrawingDirtyRegion) {
+                // drawTick already updated it and sized the locked rect for that state; a new
+                // clock read here could move the hands out of the rect.
+                updateTrajectoryTime();
+            }
+            HandRotations shifted = mTrajectoryTime.getShiftedRotations();
+            HandRotations current = mTrajectoryTime.getCurrentRotations();
 
-            // Draw the background.
-            canvas.drawBitmap(mBackgroundBitmap, 0, 0, mBackgroundPaint);
+            /*
+             * With the minute layer, the background phase includes redrawing the layer once a
+             * minute and the hand phases only cover the second hands.
+             */
+            if (USE_MINUTE_LAYER) {
+                Canvas layerCanvas = mMinuteLayer.beginFrame(mTrajectoryTime.getMinuteKey(),
+                        mTrajectoryTime.getEtaOffsetMs(), mAmbient);
+                if (layerCanvas != null) {
+                    drawMinuteContent(layerCanvas);
+                    if (mDrawingDirtyRegion) {
+                        // The layer didn't match the state drawTick checked; finish with a full
+                        // frame.
+                        invalidate();
+                    }
+                }
+                mMinuteLayer.draw(canvas, mBackgroundPaint);
+            } else {
+                drawBackground(canvas);
+            }
+            mFrameStats.endPhase();
 
-            handRotations r = new handRotations();
+            if (!USE_MINUTE_LAYER) {
+                drawHourAndMinuteHands(canvas, shifted, true);
+            }
+            if (!mAmbient) {
+                drawSecondHand(canvas, shifted, true);
+            }
+            mFrameStats.endPhase();
 
-            Time shiftedTime = addMinutesToTime(mTime, 75);
+            if (!USE_MINUTE_LAYER) {
+                drawHourAndMinuteHands(canvas, current, false);
+            }
+            if (!mAmbient) {
+                drawSecondHand(canvas, current, false);
+            }
+            // In ambient mode the layer has the cap, and the frame is only a blit and the mask.
+            if (!USE_MINUTE_LAYER || !mAmbient) {
+                drawCap(canvas);
+            }
+            if (mAmbient) {
+                canvas.drawRect(mCardBounds, mBackgroundPaint);
+            }
+            mFrameStats.endPhase();
+            mFrameStats.endFrame();
+            if (mAmbient) {
+                mAmbientWakeStats.recordFrame(mTrajectoryTime.getEpochMinute(),
+                        mFrameStats.getLastFrameNanos());
+            }
+            mSurfaceReadyStats.onFrame(System.nanoTime(),
+                    mBackgroundBitmap != null && !mBackgroundLoader.isLoading());
+            mStartupTracer.finish();
+            if (mSweeping) {
+                mFramePacer.recordFrame(System.nanoTime(), mFrameStats.getLastFrameNanos());
+            }
+            if (DIRTY_REGIONS && !mDrawingDirtyRegion) {
+                getSecondHandsBounds(mSecondHandsBounds);
+                mDirtyRegion.onFullFrame(mWidth, mHeight, mTrajectoryTime.getMinuteKey(),
+                        mTrajectoryTime.getEtaOffsetMs(), mAmbient ? null : mSecondHandsBounds);
+            }
+        }
 
-            drawHandsForTime(canvas, shiftedTime, trajectoryHandPaint);
-            drawHandsForTime(canvas, mTime, mHandPaint);
+        /**
+         * Draws a timer tick. With dirty regions, a tick within both minutes of the last full
+         * frame locks and redraws only the rectangle the second hands moved through; the surface
+         * keeps the rest of the previous frame. Anything else invalidates the whole face.
+         */
+        private void drawTick() {
+            if (!DIRTY_REGIONS) {
+                invalidate();
+                return;
+            }
+            updateTrajectoryTime();
+            getSecondHandsBounds(mSecondHandsBounds);
+            Rect dirty = mDirtyRegion.beginDirtyFrame(mTrajectoryTime.getMinuteKey(),
+                    mTrajectoryTime.getEtaOffsetMs(), mSecondHandsBounds);
+            if (dirty == null) {
+                invalidate();
+                return;
+            }
+            SurfaceHolder holder = getSurfaceHolder();
+            // Draws through the same onDraw as a full frame, clipped to the (possibly grown) rect,
+            // at the time updated above.
+            Canvas canvas = holder.lockCanvas(dirty);
+            if (canvas == null) {
+                mDirtyRegion.invalidate();
+                invalidate();
+                return;
+            }
+            mDrawingDirtyRegion = true;
+            try {
+                onDraw(canvas, holder.getSurfaceFrame());
+            } finally {
+                mDrawingDirtyRegion = false;
+                holder.unlockCanvasAndPost(canvas);
+            }
+            mDirtyRegion.endDirtyFrame(dirty);
+        }
 
-            canvas.drawCircle(mCenterX, mCenterY, HAND_END_CAP_RADIUS, mHandPaint);
+        /**
+         * Sets {@code out} to the pixels the second hands of both hand sets cover at the last
+         * time {@link #mTrajectoryTime} was updated to, including their shadow.
+         */
+        private void getSecondHandsBounds(Rect out) {
+            // Like the sprite padding: the stroke, the shadow on both sides and a pixel of
+            // anti-aliasing.
+            float outset = STROKE_WIDTH + 2 * SHADOW_RADIUS + 1;
+            int second = mTrajectoryTime.getCurrentRotations().second;
+            int shiftedSecond = mTrajectoryTime.getShiftedRotations().second;
+            RectF bounds = mSecondHandsBoundsF;
+            bounds.set(mHandGeometry.getSecondStartX(second), mHandGeometry.getSecondStartY(second),
+                    mHandGeometry.getSecondStartX(second), mHandGeometry.getSecondStartY(second));
+            bounds.union(mHandGeometry.getSecondEndX(second), mHandGeometry.getSecondEndY(second));
+            bounds.union(mHandGeometry.getSecondStartX(shiftedSecond),
+                    mHandGeometry.getSecondStartY(shiftedSecond));
+            bounds.union(mHandGeometry.getSecondEndX(shiftedSecond),
+                    mHandGeometry.getSecondEndY(shiftedSecond));
+            bounds.inset(-outset, -outset);
+            bounds.roundOut(out);
         }
 
-        private void drawHandsForTime(Canvas canvas, Time t, Paint paint){
-            canvas.save();
-            handRotations r;
-            r = getRotationsForTime(t);
-            drawHandsForRotations(canvas, r, paint);
-            canvas.restore();
+        /**
+         * Draws everything that changes at most once a minute per time: the background and the
+         * hour and minute hands of the trajectory and the current time, plus the cap in ambient
+         * mode, where no second hands go on top of it.
+         */
+        private void drawMinuteContent(Canvas canvas) {
+            drawBackground(canvas);
+            drawHourAndMinuteHands(canvas, mTrajectoryTime.getShiftedRotations(), true);
+            drawHourAndMinuteHands(canvas, mTrajectoryTime.getCurrentRotations(), false);
+            if (mAmbient) {
+                drawCap(canvas);
+            }
         }
 
-        private void drawHandsForRotations(Canvas canvas, handRotations r, Paint paint){
+        private void drawBackground(Canvas canvas) {
+            if (mBackgroundBitmap == null) {
+                canvas.drawColor(Color.BLACK);
+            } else {
+                canvas.drawBitmap(mBackgroundBitmap, 0, 0, mBackgroundPaint);
+            }
+        }
+
+        private void drawCap(Canvas canvas) {
+            if (HAND_DRAWING == HANDS_SPRITES) {
+                mHandSprites.drawCap(canvas, mCenterX, mCenterY);
+            } else {
+                canvas.drawCircle(mCenterX, mCenterY, HAND_END_CAP_RADIUS, mHandPaint);
+            }
+        }
+
+        private void drawHourAndMinuteHands(Canvas canvas, HandRotations r, boolean trajectory) {
+            if (HAND_DRAWING == HANDS_SPRITES) {
+                HandSprites sprites = trajectory ? mTrajectoryHandSprites : mHandSprites;
+                sprites.drawHourAndMinuteHands(canvas, r.hoursRotation, r.minutesRotation,
+                        mCenterX, mCenterY);
+                return;
+            }
+            if (HAND_DRAWING == HANDS_GEOMETRY_TABLE) {
+                Paint linePaint = trajectory ? mTrajectoryHandLinePaint : mHandLinePaint;
+                int hourIndex = HandGeometry.hourIndex(r);
+                canvas.drawLine(mCenterX, mCenterY, mHandGeometry.getHourX(hourIndex),
+                        mHandGeometry.getHourY(hourIndex), linePaint);
+                canvas.drawLine(mCenterX, mCenterY, mHandGeometry.getMinuteX(r.minute),
+                        mHandGeometry.getMinuteY(r.minute), linePaint);
+                return;
+            }
+            Paint paint = trajectory ? trajectoryHandPaint : mHandPaint;
+            canvas.save();
             canvas.rotate(r.hoursRotation, mCenterX, mCenterY);
             drawHand(canvas, mHourHandLength, paint);
 
             canvas.rotate(r.minutesRotation - r.hoursRotation, mCenterX, mCenterY);
             drawHand(canvas, mMinuteHandLength, paint);
+            canvas.restore();
+        }
 
-            if(!mAmbient){
-            canvas.rotate(r.secondsRotation - r.minutesRotation, mCenterX, mCenterY);
+        private void drawSecondHand(Canvas canvas, HandRotations r, boolean trajectory) {
+            float secondsRotation = SWEEP_SECOND_HAND ? r.sweepSecondsRotation : r.secondsRotation;
+            if (HAND_DRAWING == HANDS_SPRITES) {
+                HandSprites sprites = trajectory ? mTrajectoryHandSprites : mHandSprites;
+                sprites.drawSecondHand(canvas, secondsRotation, mCenterX, mCenterY);
+                return;
+            }
+            Paint paint = trajectory ? trajectoryHandPaint : mHandPaint;
+            // The table only has the 60 tick positions; a sweeping hand is rotated instead.
+            if (HAND_DRAWING == HANDS_GEOMETRY_TABLE && !SWEEP_SECOND_HAND) {
+                canvas.drawLine(mHandGeometry.getSecondStartX(r.second),
+                        mHandGeometry.getSecondStartY(r.second),
+                        mHandGeometry.getSecondEndX(r.second),
+                        mHandGeometry.getSecondEndY(r.second), paint);
+                return;
+            }
+            canvas.save();
+            canvas.rotate(secondsRotation, mCenterX, mCenterY);
             canvas.drawLine(mCenterX, mCenterY - HAND_END_CAP_RADIUS, mCenterX,
                     mCenterY - mSecondHandLength, paint);
-            }
+            canvas.restore();
         }
 
         private void drawHand(Canvas canvas, float handLength, Paint paint) {
@@ -270,6 +666,49 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
                     HAND_END_CAP_RADIUS, paint);
         }
 
+        /**
+         * Returns the phases of this engine's startup so far, for the startup test.
+         */
+        StartupTrace getStartupTrace() {
+            return mStartupTracer.getTrace();
+        }
+
+        @Override
+        protected void dump(String prefix, FileDescriptor fd, PrintWriter out, String[] args) {
+            super.dump(prefix, fd, out, args);
+            out.print(prefix);
+            out.println("frameMode=" + FRAME_MODE);
+            mFrameStats.dump(prefix, out);
+            mStartupTracer.dump(prefix, out);
+            out.print(prefix);
+            out.println("tickScheduler:");
+            TickScheduler.getInstance().dump(prefix + "  ", out);
+            if (SWEEP_SECOND_HAND) {
+                out.print(prefix);
+                out.println("sweep:");
+                mFramePacer.dump(prefix + "  ", out);
+            }
+            if (USE_MINUTE_LAYER) {
+                out.print(prefix);
+                out.println("minuteLayer rebuilds=" + mMinuteLayer.getRebuildCount()
+                        + " cheapFrames=" + mMinuteLayer.getCheapFrameCount());
+            }
+            out.print(prefix);
+            out.println("ambient:");
+            mAmbientWakeStats.dump(prefix + "  ", out);
+            mSurfaceReadyStats.dump(prefix, out);
+            mEtaSource.dump(prefix, WallClock.currentTimeMillis(), out);
+            mBackgroundLoader.dump(prefix, out);
+            BitmapDiskCache.getInstance(MyWatchFaceService.this).dump(prefix, out);
+            if (DIRTY_REGIONS) {
+                out.print(prefix);
+                out.println("fullFrames=" + mDirtyRegion.getFullFrameCount() + " pixels/frame="
+                        + mDirtyRegion.getMeanFullFramePixels() + " dirtyFrames="
+                        + mDirtyRegion.getDirtyFrameCount() + " pixels/frame="
+                        + mDirtyRegion.getMeanDirtyFramePixels());
+            }
+        }
+
         @Override
         public void onVisibilityChanged(boolean visible) {
             super.onVisibilityChanged(visible);
@@ -278,8 +717,9 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
                 registerReceiver();
 
                 // Update time zone in case it changed while we weren't visible.
-                mTime.clear(TimeZone.getDefault().getID());
-                mTime.setToNow();
+                mTimeZone = TimeZone.getDefault();
+                mMinuteLayer.invalidate();
+                mDirtyRegion.invalidate();
             } else {
                 unregisterReceiver();
             }
@@ -292,6 +732,12 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
             updateTimer();
         }
 
+        @Override
+        public void onPeekCardPositionUpdate(Rect rect) {
+            super.onPeekCardPositionUpdate(rect);
+            mCardBounds.set(rect);
+        }
+
         private void registerReceiver() {
             if (mRegisteredTimeZoneReceiver) {
                 return;
@@ -299,6 +745,11 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
             mRegisteredTimeZoneReceiver = true;
             IntentFilter filter = new IntentFilter(Intent.ACTION_TIMEZONE_CHANGED);
             MyWatchFaceService.this.registerReceiver(mTimeZoneReceiver, filter);
+            if (SWEEP_SECOND_HAND) {
+                // The battery broadcast is sticky, so the receiver hears the current level now.
+                MyWatchFaceService.this.registerReceiver(mBatteryReceiver,
+                        new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+            }
         }
 
         private void unregisterReceiver() {
@@ -307,18 +758,33 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
             }
             mRegisteredTimeZoneReceiver = false;
             MyWatchFaceService.this.unregisterReceiver(mTimeZoneReceiver);
+            if (SWEEP_SECOND_HAND) {
+                MyWatchFaceService.this.unregisterReceiver(mBatteryReceiver);
+            }
         }
 
         private void updateTimer() {
-            mUpdateTimeHandler.removeMessages(R.id.message_update);
-            if (shouldTimerBeRunning()) {
-                mUpdateTimeHandler.sendEmptyMessage(R.id.message_update);
+            boolean sweep = SWEEP_SECOND_HAND && shouldTimerBeRunning();
+            if (sweep && !mSweeping) {
+                mFramePacer.reset();
+                Choreographer.getInstance().postFrameCallback(mSweepFrameCallback);
+            } else if (!sweep && mSweeping) {
+                Choreographer.getInstance().removeFrameCallback(mSweepFrameCallback);
+            }
+            mSweeping = sweep;
+            if (shouldTimerBeRunning() && !sweep) {
+                // Subscribing again is a no-op, so only a new subscription draws right away.
+                if (TickScheduler.getInstance().subscribe(mTickListener)) {
+                    drawTick();
+                }
+            } else {
+                TickScheduler.getInstance().unsubscribe(mTickListener);
             }
         }
 
         /**
-         * Returns whether the {@link #mUpdateTimeHandler} timer should be running. The timer
-         * should only run when we're visible and in interactive mode.
+         * Returns whether the engine should get ticks from the {@link TickScheduler}, or run the
+         * sweep frame callback: only while visible and in interactive mode.
          */
         private boolean shouldTimerBeRunning() {
             return isVisible() && !isInAmbientMode();
@@ -0,0 +1,91 @@
+package com.mortenjust.trajectoryclock;
+
+import android.graphics.Rect;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class DirtyRegionTest {
+
+    private static final int SIZE = 320;
+    private static final long MINUTE = 23948160L;
+    private static final long ETA_OFFSET_MS = 600000;
+
+    private DirtyRegion mRegion;
+
+    @Before
+    public void setUp() {
+        mRegion = new DirtyRegion();
+        mRegion.onFullFrame(SIZE, SIZE, MINUTE, ETA_OFFSET_MS, new Rect(150, 20, 170, 160));
+    }
+
+    @Test
+    public void aTickWithinTheMinuteRedrawsTheOldAndNewHands() {
+        Rect dirty = mRegion.beginDirtyFrame(MINUTE, ETA_OFFSET_MS, new Rect(160, 30, 200, 160));
+
+        assertEquals(new Rect(150, 20, 200, 160), dirty);
+        mRegion.endDirtyFrame(dirty);
+        assertEquals(1, mRegion.getDirtyFrameCount());
+        assertEquals(50 * 140, mRegion.getMeanDirtyFramePixels());
+    }
+
+    @Test
+    public void theNextTickStartsFromTheHandsTheLastTickDrew() {
+        mRegion.endDirtyFrame(
+                mRegion.beginDirtyFrame(MINUTE, ETA_OFFSET_MS, new Rect(160, 30, 200, 160)));
+
+        Rect dirty = mRegion.beginDirtyFrame(MINUTE, ETA_OFFSET_MS, new Rect(160, 150, 280, 170));
+
+        assertEquals(new Rect(160, 30, 280, 170), dirty);
+    }
+
+    @Test
+    public void theBoundsOfTheLastFrameIncludeHowFarLockCanvasGrewTheRect() {
+        Rect dirty = mRegion.beginDirtyFrame(MINUTE, ETA_OFFSET_MS, new Rect(160, 30, 200, 160));
+        // lockCanvas may hand back a bigger rect, e.g. the whole surface.
+        dirty.set(0, 0, SIZE, SIZE);
+        mRegion.endDirtyFrame(dirty);
+
+        assertEquals((long) SIZE * SIZE, mRegion.getMeanDirtyFramePixels());
+        // What matters for the next tick is where the hands were, not how much was redrawn.
+        assertEquals(new Rect(160, 30, 210, 170),
+                mRegion.beginDirtyFrame(MINUTE, ETA_OFFSET_MS, new Rect(170, 40, 210, 170)));
+    }
+
+    @Test
+    public void aNewMinuteNeedsAFullFrame() {
+        assertNull(mRegion.beginDirtyFrame(MINUTE + 1, ETA_OFFSET_MS, new Rect(0, 0, 1, 1)));
+    }
+
+    @Test
+    public void aNewEtaNeedsAFullFrame() {
+        assertNull(mRegion.beginDirtyFrame(MINUTE, ETA_OFFSET_MS + 1000, new Rect(0, 0, 1, 1)));
+    }
+
+    @Test
+    public void invalidateNeedsAFullFrameUntilTheNextOne() {
+        mRegion.invalidate();
+        assertNull(mRegion.beginDirtyFrame(MINUTE, ETA_OFFSET_MS, new Rect(0, 0, 1, 1)));
+
+        mRegion.onFullFrame(SIZE, SIZE, MINUTE, ETA_OFFSET_MS, new Rect(0, 0, 1, 1));
+        assertNotNull(mRegion.beginDirtyFrame(MINUTE, ETA_OFFSET_MS, new Rect(0, 0, 1, 1)));
+    }
+
+    @Test
+    public void aFullFrameWithoutSecondHandsNeedsAnotherFullFrame() {
+        mRegion.onFullFrame(SIZE, SIZE, MINUTE, ETA_OFFSET_MS, null);
+
+        assertNull(mRegion.beginDirtyFrame(MINUTE, ETA_OFFSET_MS, new Rect(0, 0, 1, 1)));
+        assertEquals(2, mRegion.getFullFrameCount());
+        assertEquals((long) SIZE * SIZE, mRegion.getMeanFullFramePixels());
+    }
+}
@@ -0,0 +1,21 @@
+package com.mortenjust.trajectoryclock;
+
+import android.support.wearable.watchface.CanvasWatchFaceService;
+
+import com.mortenjust.trajectoryclock.core.StartupTrace;
+import com.mortenjust.trajectoryclock.harness.WatchFaceRenderTest;
+
+/**
+ * Runs the render harness against the 2-background engine.
+ */
+public class RenderHarnessTest extends WatchFaceRenderTest {
+
+    public RenderHarnessTest() {
+        super("2-background", MyWatchFaceService.class);
+    }
+
+    @Override
+    protected StartupTrace getStartupTrace(CanvasWatchFaceService.Engine engine) {
+        return ((MyWatchFaceService.Engine) engine).getStartupTrace();
+    }
+}
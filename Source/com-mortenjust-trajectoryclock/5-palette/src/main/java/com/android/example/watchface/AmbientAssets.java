@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.example.watchface;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorMatrix;
+import android.graphics.ColorMatrixColorFilter;
+import android.graphics.Paint;
+import android.graphics.Path;
+
+import com.mortenjust.trajectoryclock.common.BitmapDiskCache;
+import com.mortenjust.trajectoryclock.core.PixelShiftSchedule;
+
+/**
+ * Everything the face draws in ambient mode that can be prepared ahead, for one surface size and
+ * one set of ambient display properties:
+ *
+ * <ul>
+ * <li>On a regular screen, a grayscale copy of the background.</li>
+ * <li>On a low-bit screen, the background quantized to one bit and kept as an
+ * {@link Bitmap.Config#ALPHA_8} mask, drawn in white.</li>
+ * <li>With burn-in protection, no background, outline-only hour and minute hand paths and a
+ * pixel shift schedule to move them around.</li>
+ * </ul>
+ *
+ * {@link #build} does the work, and is meant to run off the UI thread.
+ */
+final class AmbientAssets {
+
+    /* Luma, 0-255, at or above which a background pixel stays lit on a low-bit screen. */
+    private static final int ONE_BIT_THRESHOLD = 128;
+
+    /* Furthest the burn-in schedule moves the hands in each direction. */
+    private static final int MAX_PIXEL_SHIFT = 4;
+
+    private final Bitmap mDial;
+    private final boolean mDialIsMask;
+    private final Path mHourHandOutline;
+    private final Path mMinuteHandOutline;
+    private final PixelShiftSchedule mPixelShiftSchedule;
+
+    private AmbientAssets(Bitmap dial, boolean dialIsMask, Path hourHandOutline,
+            Path minuteHandOutline, PixelShiftSchedule pixelShiftSchedule) {
+        mDial = dial;
+        mDialIsMask = dialIsMask;
+        mHourHandOutline = hourHandOutline;
+        mMinuteHandOutline = minuteHandOutline;
+        mPixelShiftSchedule = pixelShiftSchedule;
+    }
+
+    /**
+     * Prepares the assets for the given properties. Dials are looked up in {@code cache} first
+     * and saved there when they have to be built from {@code background}, which was scaled from
+     * resource {@code backgroundResId}. The hand paths point up from the origin, so they are
+     * drawn translated to the center and rotated.
+     */
+    static AmbientAssets build(Bitmap background, int backgroundResId, BitmapDiskCache cache,
+            boolean lowBitAmbient, boolean burnInProtection, float hourHandLength,
+            float minuteHandLength, float handEndCapRadius) {
+        if (burnInProtection) {
+            return new AmbientAssets(null, false,
+                    handOutline(hourHandLength, handEndCapRadius),
+                    handOutline(minuteHandLength, handEndCapRadius),
+                    new PixelShiftSchedule(MAX_PIXEL_SHIFT));
+        }
+        String key = BitmapDiskCache.key(backgroundResId, background.getWidth(),
+                background.getHeight(), lowBitAmbient ? "onebit" : "gray");
+        Bitmap dial = cache.get(key, null);
+        if (dial == null) {
+            dial = lowBitAmbient ? oneBitDial(background) : grayDial(background);
+            cache.put(key, dial);
+        }
+        return new AmbientAssets(dial, lowBitAmbient, null, null, null);
+    }
+
+    private static Bitmap grayDial(Bitmap background) {
+        Bitmap dial = Bitmap.createBitmap(background.getWidth(), background.getHeight(),
+                Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(dial);
+        Paint grayPaint = new Paint();
+        ColorMatrix colorMatrix = new ColorMatrix();
+        colorMatrix.setSaturation(0);
+        grayPaint.setColorFilter(new ColorMatrixColorFilter(colorMatrix));
+        canvas.drawBitmap(background, 0, 0, grayPaint);
+        return dial;
+    }
+
+    private static Bitmap oneBitDial(Bitmap background) {
+        int width = background.getWidth();
+        int height = background.getHeight();
+        int[] pixels = new int[width * height];
+        background.getPixels(pixels, 0, width, 0, 0, width, height);
+        for (int i = 0; i < pixels.length; i++) {
+            int color = pixels[i];
+            int luma = (Color.red(color) * 299 + Color.green(color) * 587
+                    + Color.blue(color) * 114) / 1000;
+            pixels[i] = luma >= ONE_BIT_THRESHOLD ? Color.BLACK : Color.TRANSPARENT;
+        }
+        // Only the alpha of each pixel is kept, one byte instead of four.
+        Bitmap dial = Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+        dial.setPixels(pixels, 0, width, 0, 0, width, height);
+        return dial;
+    }
+
+    /**
+     * The outline of a hand as drawn in interactive mode, a rounded rectangle from just behind
+     * the center out to {@code length}.
+     */
+    private static Path handOutline(float length, float capRadius) {
+        Path path = new Path();
+        path.addRoundRect(-capRadius, -length, capRadius, capRadius, capRadius, capRadius,
+                Path.Direction.CW);
+        return path;
+    }
+
+    /**
+     * Returns the dial to draw under the hands, or null if the background stays black.
+     */
+    Bitmap getDial() {
+        return mDial;
+    }
+
+    /**
+     * Returns whether the dial is an alpha mask, to be drawn with an opaque color paint.
+     */
+    boolean isDialMask() {
+        return mDialIsMask;
+    }
+
+    /**
+     * Returns the outline of the hour hand, or null if the hands are drawn as usual.
+     */
+    Path getHourHandOutline() {
+        return mHourHandOutline;
+    }
+
+    Path getMinuteHandOutline() {
+        return mMinuteHandOutline;
+    }
+
+    /**
+     * Returns the burn-in pixel shift schedule, or null if there is no burn-in protection.
+     */
+    PixelShiftSchedule getPixelShiftSchedule() {
+        return mPixelShiftSchedule;
+    }
+
+    int getByteCount() {
+        return mDial == null ? 0 : mDial.getByteCount();
+    }
+
+    void recycle() {
+        if (mDial != null) {
+            mDial.recycle();
+        }
+    }
+}
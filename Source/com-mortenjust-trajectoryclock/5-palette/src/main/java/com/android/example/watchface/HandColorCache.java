@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.example.watchface;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+
+import com.mortenjust.trajectoryclock.core.ColorQuantizer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+
+/**
+ * Hand colors picked from a background by a {@link ColorQuantizer}, saved per background
+ * resource along with a hash of its bytes. A face applies the saved colors as soon as it is
+ * created, and then checks the hash on a background thread, extracting new colors only if the
+ * resource changed.
+ *
+ * <p>Extraction works on a copy of the background subsampled while decoding, rather than on the
+ * full-size bitmap.
+ */
+final class HandColorCache {
+
+    private static final String PREFS_NAME = "hand_colors";
+
+    /* As many as Palette makes by default. */
+    private static final int MAX_SWATCHES = 16;
+
+    private final SharedPreferences mPrefs;
+
+    HandColorCache(Context context) {
+        mPrefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Returns the saved hand and shadow colors for {@code resId}, or null if there are none.
+     */
+    int[] get(int resId) {
+        String prefix = Integer.toHexString(resId);
+        if (!mPrefs.contains(prefix + ".hash")) {
+            return null;
+        }
+        return new int[] {
+                mPrefs.getInt(prefix + ".hand", Color.WHITE),
+                mPrefs.getInt(prefix + ".shadow", Color.BLACK)
+        };
+    }
+
+    /**
+     * Returns whether the colors saved for {@code resId} were picked from a background with
+     * the given content hash.
+     */
+    boolean isCurrent(int resId, long contentHash) {
+        String prefix = Integer.toHexString(resId);
+        return mPrefs.contains(prefix + ".hash")
+                && mPrefs.getLong(prefix + ".hash", 0) == contentHash;
+    }
+
+    void put(int resId, long contentHash, int[] colors) {
+        String prefix = Integer.toHexString(resId);
+        mPrefs.edit()
+                .putLong(prefix + ".hash", contentHash)
+                .putInt(prefix + ".hand", colors[0])
+                .putInt(prefix + ".shadow", colors[1])
+                .apply();
+    }
+
+    /**
+     * Returns a CRC32 of the resource's bytes. Reads the whole resource, so call it off the UI
+     * thread.
+     */
+    static long contentHash(Resources resources, int resId) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[8192];
+        InputStream in = resources.openRawResource(resId);
+        try {
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, count);
+            }
+        } finally {
+            in.close();
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Decodes the resource subsampled to about {@code sampleDimension} pixels on its shorter
+     * side and returns its vibrant and dark muted colors for the hand and its shadow, falling
+     * back to white on black. Call it off the UI thread.
+     */
+    static int[] extract(Resources resources, int resId, int sampleDimension) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeResource(resources, resId, options);
+        int shorterSide = Math.min(options.outWidth, options.outHeight);
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = 1;
+        while (shorterSide / (options.inSampleSize * 2) >= sampleDimension) {
+            options.inSampleSize *= 2;
+        }
+        Bitmap sample = BitmapFactory.decodeResource(resources, resId, options);
+        int width = sample.getWidth();
+        int height = sample.getHeight();
+        int[] pixels = new int[width * height];
+        sample.getPixels(pixels, 0, width, 0, 0, width, height);
+        sample.recycle();
+
+        ColorQuantizer quantizer = new ColorQuantizer(MAX_SWATCHES);
+        quantizer.quantize(pixels, 0, pixels.length);
+        return new int[] {
+                quantizer.getVibrantColor(Color.WHITE),
+                quantizer.getDarkMutedColor(Color.BLACK)
+        };
+    }
+}
@@ -20,23 +20,38 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.content.res.Resources;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.ColorMatrix;
-import android.graphics.ColorMatrixColorFilter;
 import android.graphics.Paint;
+import android.graphics.Path;
 import android.graphics.Rect;
+import android.os.AsyncTask;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Message;
-import android.support.v7.graphics.Palette;
 import android.support.wearable.watchface.CanvasWatchFaceService;
 import android.support.wearable.watchface.WatchFaceStyle;
-import android.text.format.Time;
+import android.util.Log;
 import android.view.SurfaceHolder;
 
+import com.mortenjust.trajectoryclock.common.BackgroundLoader;
+import com.mortenjust.trajectoryclock.common.BitmapDiskCache;
+import com.mortenjust.trajectoryclock.common.HandSprites;
+import com.mortenjust.trajectoryclock.common.MinuteLayer;
+import com.mortenjust.trajectoryclock.common.StartupTracer;
+import com.mortenjust.trajectoryclock.common.TickScheduler;
+import com.mortenjust.trajectoryclock.core.AmbientWakeStats;
+import com.mortenjust.trajectoryclock.core.FrameStats;
+import com.mortenjust.trajectoryclock.core.HandRotations;
+import com.mortenjust.trajectoryclock.core.LatencyHistogram;
+import com.mortenjust.trajectoryclock.core.PixelShiftSchedule;
+import com.mortenjust.trajectoryclock.core.StartupTrace;
+import com.mortenjust.trajectoryclock.core.SurfaceReadyStats;
+import com.mortenjust.trajectoryclock.core.WallClock;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
 
@@ -46,40 +61,70 @@ import java.util.concurrent.TimeUnit;
  */
 public class MyWatchFaceService extends CanvasWatchFaceService {
 
+    private static final String TAG = "MyWatchFaceService";
+
+    /**
+     * Whether to draw the hands from sprites rasterized in onSurfaceChanged instead of drawing
+     * every shape, and blurring its shadow, on each frame. Flip it to compare frame times on a
+     * watch; the render harness compares both on the host.
+     */
+    private static final boolean USE_HAND_SPRITES = true;
+
     /**
-     * Update rate in milliseconds for interactive mode. We update once a second to advance the
-     * second hand.
+     * Whether ambient frames are blitted from a layer that is only redrawn when the minute
+     * changes, instead of drawn from scratch for every time tick and peek card move. Flip it to
+     * compare the time spent awake per ambient minute.
      */
-    private static final long INTERACTIVE_UPDATE_RATE_MS = TimeUnit.SECONDS.toMillis(1);
+    private static final boolean USE_AMBIENT_LAYER = true;
+
+    /**
+     * How the background is decoded, one of the BackgroundLoader.DECODE_ modes. Switch it to
+     * compare the peak heap of loading it.
+     */
+    private static final int BACKGROUND_DECODE = BackgroundLoader.DECODE_AT_SIZE;
+
+    /**
+     * Shorter side, in pixels, of the copy of the background the hand colors are picked from.
+     * Switch it to compare extraction times.
+     */
+    private static final int PALETTE_SAMPLE_DIMENSION = 100;
 
     @Override
     public Engine onCreateEngine() {
         return new Engine();
     }
 
-    private class Engine extends CanvasWatchFaceService.Engine {
+    class Engine extends CanvasWatchFaceService.Engine {
 
-        /* Handler to update the time once a second in interactive mode. */
-        private final Handler mUpdateTimeHandler = new Handler() {
+        /* Ticks once a second in interactive mode, from the wakeup all engines share. */
+        private final TickScheduler.Listener mTickListener = new TickScheduler.Listener() {
             @Override
-            public void handleMessage(Message message) {
-                if (R.id.message_update == message.what) {
-                    invalidate();
-                    if (shouldTimerBeRunning()) {
-                        long timeMs = System.currentTimeMillis();
-                        long delayMs = INTERACTIVE_UPDATE_RATE_MS
-                                - (timeMs % INTERACTIVE_UPDATE_RATE_MS);
-                        mUpdateTimeHandler.sendEmptyMessageDelayed(R.id.message_update, delayMs);
-                    }
-                }
+            public void onTick(long scheduledMs, long actualMs) {
+                mFrameStats.recordTick(scheduledMs, actualMs);
+                invalidate();
+            }
+        };
+
+        /* Swaps in the background scaled for the surface, drawn black until then. */
+        private final BackgroundLoader.Callback mBackgroundCallback =
+                new BackgroundLoader.Callback() {
+            @Override
+            public void onBackgroundLoaded(Bitmap background) {
+                // The old background is left to the GC rather than recycled, since an ambient
+                // assets task may still be reading it.
+                mBackgroundBitmap = background;
+                mStartupTracer.milestone("background loaded");
+                mAmbientLayer.invalidate();
+                prepareAmbientAssets();
+                invalidate();
             }
         };
 
         private final BroadcastReceiver mTimeZoneReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
-                mTime.clear(intent.getStringExtra("time-zone"));
-                mTime.setToNow();
+                mTimeZone = TimeZone.getTimeZone(intent.getStringExtra("time-zone"));
+                mAmbientLayer.invalidate();
             }
         };
 
@@ -90,7 +135,8 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
         private static final float STROKE_WIDTH = 4f;
         private static final int SHADOW_RADIUS = 6;
 
-        private Time mTime;
+        private TimeZone mTimeZone = TimeZone.getDefault();
+        private final HandRotations mRotations = new HandRotations();
 
         private Paint mBackgroundPaint;
         private Paint mHandPaint;
@@ -98,9 +144,31 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
         private boolean mAmbient;
 
         private Bitmap mBackgroundBitmap;
-        private Bitmap mGrayBackgroundBitmap;
-        private int mWatchHandColor;
-        private int mWatchHandShadowColor;
+        private int mBackgroundResId;
+        private BackgroundLoader mBackgroundLoader;
+        private HandColorCache mHandColorCache;
+        private AsyncTask<Void, Void, int[]> mHandColorTask;
+        private boolean mHandColorsSaved;
+        private final LatencyHistogram mPaletteExtraction = new LatencyHistogram();
+        private AmbientAssets mAmbientAssets;
+        private AsyncTask<Void, Void, AmbientAssets> mAmbientAssetsTask;
+        private Paint mAmbientDialPaint;
+        private Paint mHandOutlinePaint;
+        // The paint's own colors, until there are saved or extracted ones.
+        private int mWatchHandColor = Color.WHITE;
+        private int mWatchHandShadowColor = Color.BLACK;
+
+        private boolean mUseHandSprites = USE_HAND_SPRITES;
+        /* The set for the current mode, one of the two below. */
+        private HandSprites mHandSprites;
+        private HandSprites mInteractiveHandSprites;
+        private HandSprites mAmbientHandSprites;
+        private final FrameStats mFrameStats = new FrameStats("background", "hands");
+        private final MinuteLayer mAmbientLayer = new MinuteLayer();
+        private final AmbientWakeStats mAmbientWakeStats = new AmbientWakeStats();
+        private final SurfaceReadyStats mSurfaceReadyStats = new SurfaceReadyStats();
+        /* Created with the engine, in onCreateEngine, and finished by the first frame. */
+        private final StartupTracer mStartupTracer = new StartupTracer("5-palette");
 
         private float mHourHandLength;
         private float mMinuteHandLength;
@@ -121,19 +189,20 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
         private int mHeight;
         private float mCenterX;
         private float mCenterY;
-        private float mScale = 1;
         private Rect mCardBounds = new Rect();
 
         @Override
         public void onCreate(SurfaceHolder holder) {
             super.onCreate(holder);
 
+            mStartupTracer.begin("style");
             setWatchFaceStyle(new WatchFaceStyle.Builder(MyWatchFaceService.this)
                     .setCardPeekMode(WatchFaceStyle.PEEK_MODE_SHORT)
                     .setBackgroundVisibility(WatchFaceStyle.BACKGROUND_VISIBILITY_INTERRUPTIVE)
                     .setShowSystemUiTime(false)
                     .build());
 
+            mStartupTracer.begin("background loader");
             mBackgroundPaint = new Paint();
             mBackgroundPaint.setColor(Color.BLACK);
 
@@ -144,7 +213,12 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
             final int backgroundResId = R.drawable.custom_background;
             //final int backgroundResId = R.drawable.custom_background2;
 
-            mBackgroundBitmap = BitmapFactory.decodeResource(getResources(), backgroundResId);
+            mBackgroundResId = backgroundResId;
+            mBackgroundLoader = new BackgroundLoader(getResources(), backgroundResId,
+                    BACKGROUND_DECODE, BitmapDiskCache.getInstance(MyWatchFaceService.this),
+                    mBackgroundCallback);
+
+            mStartupTracer.begin("paints");
             mHandPaint = new Paint();
             mHandPaint.setColor(Color.WHITE);
             mHandPaint.setStrokeWidth(STROKE_WIDTH);
@@ -153,22 +227,75 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
             mHandPaint.setShadowLayer(SHADOW_RADIUS, 0, 0, Color.BLACK);
             mHandPaint.setStyle(Paint.Style.STROKE);
 
-            Palette.generateAsync(mBackgroundBitmap, new Palette.PaletteAsyncListener() {
+            mAmbientDialPaint = new Paint();
+            mAmbientDialPaint.setColor(Color.WHITE);
+
+            mHandOutlinePaint = new Paint();
+            mHandOutlinePaint.setColor(Color.WHITE);
+            mHandOutlinePaint.setStyle(Paint.Style.STROKE);
+            mHandOutlinePaint.setStrokeWidth(2f);
+
+            // The colors picked from this background last time are good for the first frame.
+            mStartupTracer.begin("saved hand colors");
+            mHandColorCache = new HandColorCache(MyWatchFaceService.this);
+            int[] colors = mHandColorCache.get(backgroundResId);
+            if (colors != null) {
+                mHandColorsSaved = true;
+                applyHandColors(colors);
+            }
+            checkHandColors();
+            mStartupTracer.end();
+        }
+
+        /**
+         * Checks on a background thread that the saved hand colors were picked from the current
+         * background, and picks and saves new ones if not.
+         */
+        private void checkHandColors() {
+            final Resources resources = getResources();
+            final int resId = mBackgroundResId;
+            final HandColorCache cache = mHandColorCache;
+            // On the pool, so an extraction doesn't hold up the background on the serial one.
+            mHandColorTask = new AsyncTask<Void, Void, int[]>() {
+                private long mExtractionNanos;
+
+                @Override
+                protected int[] doInBackground(Void... params) {
+                    long hash;
+                    try {
+                        hash = HandColorCache.contentHash(resources, resId);
+                    } catch (IOException e) {
+                        Log.w(TAG, "Couldn't hash the background", e);
+                        return null;
+                    }
+                    if (cache.isCurrent(resId, hash)) {
+                        return null;
+                    }
+                    long start = System.nanoTime();
+                    int[] colors = HandColorCache.extract(resources, resId,
+                            PALETTE_SAMPLE_DIMENSION);
+                    mExtractionNanos = System.nanoTime() - start;
+                    cache.put(resId, hash, colors);
+                    return colors;
+                }
+
                 @Override
-                public void onGenerated(Palette palette) {
-                    /*
-                     * Sometimes, palette is unable to generate a color palette
-                     * so we need to check that we have one.
-                     */
-                    if (palette != null) {
-                        mWatchHandColor = palette.getVibrantColor(Color.WHITE);
-                        mWatchHandShadowColor = palette.getDarkMutedColor(Color.BLACK);
-                        setWatchHandColor();
+                protected void onPostExecute(int[] colors) {
+                    mHandColorTask = null;
+                    mStartupTracer.milestone("hand colors checked");
+                    if (colors != null) {
+                        mPaletteExtraction.record(mExtractionNanos);
+                        applyHandColors(colors);
                     }
                 }
-            });
+            }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        }
 
-            mTime = new Time();
+        private void applyHandColors(int[] colors) {
+            mWatchHandColor = colors[0];
+            mWatchHandShadowColor = colors[1];
+            mInteractiveHandSprites = recycle(mInteractiveHandSprites);
+            setWatchHandColor();
         }
 
         private void setWatchHandColor() {
@@ -179,11 +306,70 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
                 mHandPaint.setColor(mWatchHandColor);
                 mHandPaint.setShadowLayer(SHADOW_RADIUS, 0, 0, mWatchHandShadowColor);
             }
+            // The ambient layer has the hands baked in too.
+            mAmbientLayer.invalidate();
+            mHandSprites = getHandSprites();
+        }
+
+        /**
+         * Returns the sprites for the current mode, rasterized with the hand paint the first time
+         * they are needed. The sprites bake in the paint, and each mode keeps its own set, so
+         * switching modes only swaps sets; a set is recycled when its paint's color, shadow or
+         * anti-aliasing changes, or the surface size does.
+         */
+        private HandSprites getHandSprites() {
+            if (!mUseHandSprites || mWidth == 0) {
+                return null;
+            }
+            if (mAmbient) {
+                if (mAmbientHandSprites == null) {
+                    mAmbientHandSprites = newHandSprites();
+                }
+                return mAmbientHandSprites;
+            }
+            if (mInteractiveHandSprites == null) {
+                mInteractiveHandSprites = newHandSprites();
+            }
+            return mInteractiveHandSprites;
+        }
+
+        private HandSprites newHandSprites() {
+            HandSprites sprites = HandSprites.roundHands(mHourHandLength, mMinuteHandLength,
+                    mSecondHandLength, HAND_END_CAP_RADIUS, SHADOW_RADIUS, mHandPaint);
+            sprites.setFilterBitmap(mHandPaint.isAntiAlias());
+            return sprites;
+        }
+
+        /**
+         * Recycles {@code sprites}, if any, and returns null to assign in its place.
+         */
+        private HandSprites recycle(HandSprites sprites) {
+            if (sprites != null) {
+                sprites.recycle();
+            }
+            return null;
         }
 
         @Override
         public void onDestroy() {
-            mUpdateTimeHandler.removeMessages(R.id.message_update);
+            TickScheduler.getInstance().unsubscribe(mTickListener);
+            mHandSprites = null;
+            mInteractiveHandSprites = recycle(mInteractiveHandSprites);
+            mAmbientHandSprites = recycle(mAmbientHandSprites);
+            mAmbientLayer.recycle();
+            mBackgroundLoader.release();
+            if (mHandColorTask != null) {
+                mHandColorTask.cancel(false);
+                mHandColorTask = null;
+            }
+            if (mAmbientAssetsTask != null) {
+                mAmbientAssetsTask.cancel(false);
+                mAmbientAssetsTask = null;
+            }
+            if (mAmbientAssets != null) {
+                mAmbientAssets.recycle();
+                mAmbientAssets = null;
+            }
             super.onDestroy();
         }
 
@@ -192,6 +378,14 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
             super.onPropertiesChanged(properties);
             mLowBitAmbient = properties.getBoolean(PROPERTY_LOW_BIT_AMBIENT, false);
             mBurnInProtection = properties.getBoolean(PROPERTY_BURN_IN_PROTECTION, false);
+            mHandOutlinePaint.setAntiAlias(!mLowBitAmbient);
+            // Either property turns off anti-aliasing in ambient mode.
+            mAmbientHandSprites = recycle(mAmbientHandSprites);
+            if (mAmbient) {
+                setWatchHandColor();
+            }
+            mAmbientLayer.invalidate();
+            prepareAmbientAssets();
         }
 
         @Override
@@ -209,6 +403,9 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
                     mHandPaint.setAntiAlias(!inAmbientMode);
                 }
                 setWatchHandColor();
+                if (!inAmbientMode) {
+                    mAmbientWakeStats.endMinute();
+                }
                 invalidate();
             }
 
@@ -222,6 +419,8 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
         @Override
         public void onSurfaceChanged(SurfaceHolder holder, int format, int width, int height) {
             super.onSurfaceChanged(holder, format, width, height);
+            mSurfaceReadyStats.onSurfaceChanged(System.nanoTime());
+            mStartupTracer.begin("surface");
             mWidth = width;
             mHeight = height;
             /*
@@ -232,7 +431,6 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
              */
             mCenterX = mWidth / 2f;
             mCenterY = mHeight / 2f;
-            mScale = ((float) width) / (float) mBackgroundBitmap.getWidth();
             /*
              * Calculate the lengths of the watch hands and store them in member variables.
              */
@@ -240,49 +438,169 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
             mMinuteHandLength = mCenterX * 0.7f;
             mSecondHandLength = mCenterX * 0.9f;
 
-            mBackgroundBitmap = Bitmap.createScaledBitmap(mBackgroundBitmap,
-                    (int) (mBackgroundBitmap.getWidth() * mScale),
-                    (int) (mBackgroundBitmap.getHeight() * mScale), true);
+            // Decoding and scaling take longer than a frame; until the loader delivers, frames
+            // keep the background we have, or draw black if there is none. The ambient assets
+            // are derived from the background, so they follow once it is in.
+            if (mBackgroundBitmap != null && mBackgroundBitmap.getWidth() == width) {
+                mBackgroundLoader.cancel();
+                prepareAmbientAssets();
+            } else {
+                mBackgroundLoader.load(width, height);
+            }
 
-            if (!mBurnInProtection || !mLowBitAmbient) {
-                initGrayBackgroundBitmap();
+            // Only records the size; the layer bitmap is allocated by the first ambient frame.
+            if (USE_AMBIENT_LAYER) {
+                mAmbientLayer.setSize(width, height);
             }
+            mStartupTracer.begin("hand sprites");
+            mInteractiveHandSprites = recycle(mInteractiveHandSprites);
+            mAmbientHandSprites = recycle(mAmbientHandSprites);
+            setWatchHandColor();
+            mStartupTracer.end();
         }
 
-        private void initGrayBackgroundBitmap() {
-            mGrayBackgroundBitmap = Bitmap.createBitmap(mBackgroundBitmap.getWidth(),
-                    mBackgroundBitmap.getHeight(), Bitmap.Config.ARGB_8888);
-            Canvas canvas = new Canvas(mGrayBackgroundBitmap);
-            Paint grayPaint = new Paint();
-            ColorMatrix colorMatrix = new ColorMatrix();
-            colorMatrix.setSaturation(0);
-            ColorMatrixColorFilter filter = new ColorMatrixColorFilter(colorMatrix);
-            grayPaint.setColorFilter(filter);
-            canvas.drawBitmap(mBackgroundBitmap, 0, 0, grayPaint);
+        /**
+         * Starts building the ambient assets for the current background and ambient properties
+         * on a background thread. Ambient frames draw a plain black background and the regular
+         * hands until they are ready.
+         */
+        private void prepareAmbientAssets() {
+            if (mBackgroundBitmap == null || mBackgroundLoader.isLoading()) {
+                return;
+            }
+            if (mAmbientAssetsTask != null) {
+                mAmbientAssetsTask.cancel(false);
+            }
+            final Bitmap background = mBackgroundBitmap;
+            final int backgroundResId = mBackgroundResId;
+            final BitmapDiskCache cache = BitmapDiskCache.getInstance(MyWatchFaceService.this);
+            final boolean lowBitAmbient = mLowBitAmbient;
+            final boolean burnInProtection = mBurnInProtection;
+            final float hourHandLength = mHourHandLength;
+            final float minuteHandLength = mMinuteHandLength;
+            mAmbientAssetsTask = new AsyncTask<Void, Void, AmbientAssets>() {
+                @Override
+                protected AmbientAssets doInBackground(Void... params) {
+                    return AmbientAssets.build(background, backgroundResId, cache, lowBitAmbient,
+                            burnInProtection, hourHandLength, minuteHandLength,
+                            HAND_END_CAP_RADIUS);
+                }
+
+                @Override
+                protected void onPostExecute(AmbientAssets assets) {
+                    if (mAmbientAssets != null) {
+                        mAmbientAssets.recycle();
+                    }
+                    mAmbientAssets = assets;
+                    mAmbientAssetsTask = null;
+                    mStartupTracer.milestone("ambient assets ready");
+                    mAmbientLayer.invalidate();
+                    if (mAmbient) {
+                        invalidate();
+                    }
+                }
+
+                @Override
+                protected void onCancelled(AmbientAssets assets) {
+                    if (assets != null) {
+                        assets.recycle();
+                    }
+                }
+            }.execute();
         }
 
         @Override
         public void onDraw(Canvas canvas, Rect bounds) {
-            mTime.setToNow();
+            mStartupTracer.begin("first frame");
+            mFrameStats.beginFrame();
+            long nowMs = WallClock.currentTimeMillis();
+            mRotations.setLocalTime(nowMs + mTimeZone.getOffset(nowMs));
+            // Zone offsets are whole minutes, so this turns with the local minute.
+            long epochMinute = TimeUnit.MILLISECONDS.toMinutes(nowMs);
+
+            if (mAmbient && USE_AMBIENT_LAYER) {
+                Canvas layerCanvas = mAmbientLayer.beginFrame(epochMinute, 0, true);
+                if (layerCanvas != null) {
+                    drawBackground(layerCanvas);
+                    drawHands(layerCanvas, epochMinute);
+                }
+                mAmbientLayer.draw(canvas, mBackgroundPaint);
+                mFrameStats.endPhase();
+            } else {
+                drawBackground(canvas);
+                mFrameStats.endPhase();
+                drawHands(canvas, epochMinute);
+            }
+
+            if (mAmbient) {
+                canvas.drawRect(mCardBounds, mBackgroundPaint);
+            }
+            mFrameStats.endPhase();
+            mFrameStats.endFrame();
+            mSurfaceReadyStats.onFrame(System.nanoTime(), mBackgroundBitmap != null
+                    && !mBackgroundLoader.isLoading()
+                    && (!mAmbient || mAmbientAssetsTask == null));
+            mStartupTracer.finish();
+            if (mAmbient) {
+                mAmbientWakeStats.recordFrame(epochMinute, mFrameStats.getLastFrameNanos());
+            }
+        }
 
-            if (mAmbient && (mLowBitAmbient || mBurnInProtection)) {
+        private void drawBackground(Canvas canvas) {
+            if (!mAmbient) {
+                if (mBackgroundBitmap == null) {
+                    canvas.drawColor(Color.BLACK);
+                } else {
+                    canvas.drawBitmap(mBackgroundBitmap, 0, 0, mBackgroundPaint);
+                }
+                return;
+            }
+            Bitmap dial = mAmbientAssets == null ? null : mAmbientAssets.getDial();
+            if (dial == null) {
                 canvas.drawColor(Color.BLACK);
-            } else if (mAmbient) {
-                canvas.drawBitmap(mGrayBackgroundBitmap, 0, 0, mBackgroundPaint);
+            } else if (mAmbientAssets.isDialMask()) {
+                canvas.drawColor(Color.BLACK);
+                canvas.drawBitmap(dial, 0, 0, mAmbientDialPaint);
             } else {
-                canvas.drawBitmap(mBackgroundBitmap, 0, 0, mBackgroundPaint);
+                canvas.drawBitmap(dial, 0, 0, mBackgroundPaint);
             }
+        }
 
-            /*
-             * These calculations reflect the rotation in degrees per unit of
-             * time, e.g. 360 / 60 = 6 and 360 / 12 = 30
-             */
-            final float secondsRotation = mTime.second * 6f;
-            final float minutesRotation = mTime.minute * 6f;
-            // account for the offset of the hour hand due to minutes of the hour.
-            final float hourHandOffset = mTime.minute / 2f;
-            final float hoursRotation = (mTime.hour * 30) + hourHandOffset;
+        /**
+         * Draws the hands for {@link #mRotations}, without the second hand in ambient mode. With
+         * burn-in protection, ambient hands are outlines moved by the pixel shift schedule.
+         */
+        private void drawHands(Canvas canvas, long epochMinute) {
+            Path hourHandOutline = mAmbientAssets == null ? null
+                    : mAmbientAssets.getHourHandOutline();
+            if (mAmbient && hourHandOutline != null) {
+                PixelShiftSchedule shift = mAmbientAssets.getPixelShiftSchedule();
+                canvas.save();
+                canvas.translate(mCenterX + shift.getShiftX(epochMinute),
+                        mCenterY + shift.getShiftY(epochMinute));
+                canvas.rotate(mRotations.hoursRotation);
+                canvas.drawPath(hourHandOutline, mHandOutlinePaint);
+                canvas.rotate(mRotations.minutesRotation - mRotations.hoursRotation);
+                canvas.drawPath(mAmbientAssets.getMinuteHandOutline(), mHandOutlinePaint);
+                canvas.restore();
+                return;
+            }
+
+            final float secondsRotation = mRotations.secondsRotation;
+            final float minutesRotation = mRotations.minutesRotation;
+            final float hoursRotation = mRotations.hoursRotation;
 
+            if (mUseHandSprites) {
+                mHandSprites.draw(canvas, hoursRotation, minutesRotation, secondsRotation,
+                        !mAmbient, mCenterX, mCenterY);
+                mHandSprites.drawCap(canvas, mCenterX, mCenterY);
+            } else {
+                drawHands(canvas, hoursRotation, minutesRotation, secondsRotation);
+            }
+        }
+
+        private void drawHands(Canvas canvas, float hoursRotation, float minutesRotation,
+                float secondsRotation) {
             // save the canvas state before we begin to rotate it
             canvas.save();
 
@@ -304,10 +622,6 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
             canvas.drawCircle(mCenterX, mCenterY, HAND_END_CAP_RADIUS, mHandPaint);
             // restore the canvas' original orientation.
             canvas.restore();
-
-            if (mAmbient) {
-                canvas.drawRect(mCardBounds, mBackgroundPaint);
-            }
         }
 
         private void drawHand(Canvas canvas, float handLength) {
@@ -316,6 +630,59 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
                     HAND_END_CAP_RADIUS, HAND_END_CAP_RADIUS, mHandPaint);
         }
 
+        /**
+         * Returns the phases of this engine's startup so far, for the startup test.
+         */
+        StartupTrace getStartupTrace() {
+            return mStartupTracer.getTrace();
+        }
+
+        /**
+         * Switches between sprites and shapes, for the render harness to compare the two.
+         */
+        void setUseHandSprites(boolean useHandSprites) {
+            mUseHandSprites = useHandSprites;
+            setWatchHandColor();
+        }
+
+        @Override
+        protected void dump(String prefix, FileDescriptor fd, PrintWriter out, String[] args) {
+            super.dump(prefix, fd, out, args);
+            out.print(prefix);
+            out.println("frameMode=" + (mUseHandSprites ? "sprites" : "shapes")
+                    + (USE_AMBIENT_LAYER ? "+ambientLayer" : ""));
+            mFrameStats.dump(prefix, out);
+            out.print(prefix);
+            out.println("tickScheduler:");
+            TickScheduler.getInstance().dump(prefix + "  ", out);
+            out.print(prefix);
+            out.println("ambient:");
+            mAmbientWakeStats.dump(prefix + "  ", out);
+            mSurfaceReadyStats.dump(prefix, out);
+            mStartupTracer.dump(prefix, out);
+            out.print(prefix);
+            out.println("palette sampleDimension=" + PALETTE_SAMPLE_DIMENSION + " savedColors="
+                    + mHandColorsSaved + " extraction:");
+            mPaletteExtraction.dump(prefix + "  ", out);
+            mBackgroundLoader.dump(prefix, out);
+            BitmapDiskCache.getInstance(MyWatchFaceService.this).dump(prefix, out);
+            if (USE_AMBIENT_LAYER) {
+                out.print(prefix);
+                out.println("  layer rebuilds=" + mAmbientLayer.getRebuildCount()
+                        + " cheapFrames=" + mAmbientLayer.getCheapFrameCount());
+            }
+            out.print(prefix);
+            out.println("bitmap bytes: background=" + (mBackgroundBitmap == null ? 0
+                            : mBackgroundBitmap.getByteCount())
+                    + " ambientDial=" + (mAmbientAssets == null ? 0
+                            : mAmbientAssets.getByteCount())
+                    + " ambientLayer=" + mAmbientLayer.getByteCount()
+                    + " handSprites=" + (mInteractiveHandSprites == null ? 0
+                            : mInteractiveHandSprites.getByteCount())
+                    + " ambientHandSprites=" + (mAmbientHandSprites == null ? 0
+                            : mAmbientHandSprites.getByteCount()));
+        }
+
         @Override
         public void onVisibilityChanged(boolean visible) {
             super.onVisibilityChanged(visible);
@@ -324,8 +691,8 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
                 registerReceiver();
 
                 // Update time zone in case it changed while we weren't visible.
-                mTime.clear(TimeZone.getDefault().getID());
-                mTime.setToNow();
+                mTimeZone = TimeZone.getDefault();
+                mAmbientLayer.invalidate();
             } else {
                 unregisterReceiver();
             }
@@ -362,15 +729,19 @@ public class MyWatchFaceService extends CanvasWatchFaceService {
         }
 
         private void updateTimer() {
-            mUpdateTimeHandler.removeMessages(R.id.message_update);
             if (shouldTimerBeRunning()) {
-                mUpdateTimeHandler.sendEmptyMessage(R.id.message_update);
+                // Subscribing again is a no-op, so only a new subscription draws right away.
+                if (TickScheduler.getInstance().subscribe(mTickListener)) {
+                    invalidate();
+                }
+            } else {
+                TickScheduler.getInstance().unsubscribe(mTickListener);
             }
         }
 
         /**
-         * Returns whether the {@link #mUpdateTimeHandler} timer should be running. The timer
-         * should only run when we're visible and in interactive mode.
+         * Returns whether the engine should get ticks from the {@link TickScheduler}, which
+         * is only while we're visible and in interactive mode.
          */
         private boolean shouldTimerBeRunning() {
             return isVisible() && !isInAmbientMode();
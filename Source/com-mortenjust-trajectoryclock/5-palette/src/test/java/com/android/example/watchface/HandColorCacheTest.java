@@ -0,0 +1,82 @@
+package com.android.example.watchface;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+import android.support.v7.graphics.Palette;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the hand colors the in-house quantizer picks from the bundled backgrounds with what
+ * Palette picks from the full-size bitmaps, and prints both with the time each took.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class HandColorCacheTest {
+
+    private static final int[] BACKGROUNDS = {
+            R.drawable.custom_background, R.drawable.custom_background2
+    };
+
+    @Test
+    public void picksColorsWithinPalettesTargets() {
+        Resources resources = RuntimeEnvironment.getApplication().getResources();
+        for (int resId : BACKGROUNDS) {
+            long start = System.nanoTime();
+            int[] colors = HandColorCache.extract(resources, resId, 100);
+            long quantizerNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            Bitmap bitmap = BitmapFactory.decodeResource(resources, resId);
+            Palette palette = Palette.generate(bitmap);
+            long paletteNanos = System.nanoTime() - start;
+            int vibrant = palette.getVibrantColor(Color.WHITE);
+            int darkMuted = palette.getDarkMutedColor(Color.BLACK);
+
+            String name = resources.getResourceEntryName(resId);
+            System.out.println(name + ": quantizer " + hex(colors[0]) + "/" + hex(colors[1])
+                    + " in " + quantizerNanos / 1000 + "us, palette " + hex(vibrant) + "/"
+                    + hex(darkMuted) + " in " + paletteNanos / 1000 + "us");
+
+            // Both find a swatch for each target, or neither does.
+            assertEquals(name, vibrant == Color.WHITE ? 1 : 0, colors[0] == Color.WHITE ? 1 : 0);
+            assertEquals(name, darkMuted == Color.BLACK ? 1 : 0,
+                    colors[1] == Color.BLACK ? 1 : 0);
+            if (colors[0] != Color.WHITE) {
+                assertWithin(name + " vibrant", colors[0], 0.35f, 1f, 0.3f, 0.7f);
+            }
+            if (colors[1] != Color.BLACK) {
+                assertWithin(name + " dark muted", colors[1], 0f, 0.4f, 0f, 0.45f);
+            }
+        }
+    }
+
+    private static void assertWithin(String what, int color, float minSaturation,
+            float maxSaturation, float minLightness, float maxLightness) {
+        float red = Color.red(color) / 255f;
+        float green = Color.green(color) / 255f;
+        float blue = Color.blue(color) / 255f;
+        float max = Math.max(red, Math.max(green, blue));
+        float min = Math.min(red, Math.min(green, blue));
+        float lightness = (max + min) / 2;
+        float saturation = max == min ? 0 : (max - min) / (1 - Math.abs(2 * lightness - 1));
+        assertTrue(what + " " + hex(color), saturation >= minSaturation - 0.01f
+                && saturation <= maxSaturation + 0.01f && lightness >= minLightness - 0.01f
+                && lightness <= maxLightness + 0.01f);
+    }
+
+    private static String hex(int color) {
+        return String.format("#%06x", color & 0xffffff);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mortenjust.trajectoryclock.benchmark;
+
+import com.mortenjust.trajectoryclock.core.ColorQuantizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Cost of picking the hand colors from a bundled background with {@link ColorQuantizer}, for a
+ * few sizes of the subsampled copy the 5-palette face quantizes. The copy is made here the way
+ * {@code inSampleSize} would, by taking every n-th pixel. Run from the benchmark directory, or
+ * point {@code background} at the image.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ColorQuantizerBenchmark {
+
+    @Param({"../5-palette/src/main/res/drawable-nodpi/custom_background.jpg",
+            "../5-palette/src/main/res/drawable-nodpi/custom_background2.jpg"})
+    public String background;
+
+    /* Shorter side of the sample, like PALETTE_SAMPLE_DIMENSION. */
+    @Param({"50", "100", "200", "400"})
+    public int sampleDimension;
+
+    private final ColorQuantizer mQuantizer = new ColorQuantizer(16);
+    private int[] mPixels;
+
+    @Setup
+    public void setUp() throws IOException {
+        BufferedImage image = ImageIO.read(new File(background));
+        int shorterSide = Math.min(image.getWidth(), image.getHeight());
+        int sampleSize = 1;
+        while (shorterSide / (sampleSize * 2) >= sampleDimension) {
+            sampleSize *= 2;
+        }
+        int width = image.getWidth() / sampleSize;
+        int height = image.getHeight() / sampleSize;
+        mPixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                mPixels[y * width + x] = image.getRGB(x * sampleSize, y * sampleSize);
+            }
+        }
+    }
+
+    @Benchmark
+    public int quantize() {
+        mQuantizer.quantize(mPixels, 0, mPixels.length);
+        return mQuantizer.getVibrantColor(0) ^ mQuantizer.getDarkMutedColor(0);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mortenjust.trajectoryclock.benchmark;
+
+import com.mortenjust.trajectoryclock.core.EtaSource;
+import com.mortenjust.trajectoryclock.core.FixedEtaProvider;
+import com.mortenjust.trajectoryclock.core.HandRotations;
+import com.mortenjust.trajectoryclock.core.TrajectoryTime;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Draw path cost of taking the ETA from an {@link EtaSource} instead of a constant: refreshing
+ * if due, reading the snapshot and updating the trajectory time, as 2-background does once a
+ * frame. Each invocation advances the clock by a second, like the watch face.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EtaSourceBenchmark {
+
+    private static final int ETA_MINUTES = 75;
+    private static final long ETA_MS = TimeUnit.MINUTES.toMillis(ETA_MINUTES);
+    private static final long SECOND_MS = TimeUnit.SECONDS.toMillis(1);
+
+    private long mNowMs;
+    private TrajectoryTime mTrajectoryTime;
+    private EtaSource mEtaSource;
+    private EtaSource mEveryFrameEtaSource;
+
+    @Setup
+    public void setUp() {
+        mTrajectoryTime = new TrajectoryTime(ETA_MINUTES);
+        // The intervals the face uses, so a request goes out every 300 frames.
+        mEtaSource = new EtaSource(new FixedEtaProvider(ETA_MS), TimeUnit.MINUTES.toMillis(5),
+                TimeUnit.MINUTES.toMillis(30), ETA_MS);
+        mEveryFrameEtaSource = new EtaSource(new FixedEtaProvider(ETA_MS), 0,
+                TimeUnit.MINUTES.toMillis(30), ETA_MS);
+        mNowMs = System.currentTimeMillis();
+    }
+
+    /**
+     * The constant ETA the face had before; the lower bound.
+     */
+    @Benchmark
+    public float constantEta() {
+        mTrajectoryTime.update(mNowMs += SECOND_MS, 0);
+        return sum(mTrajectoryTime);
+    }
+
+    @Benchmark
+    public float etaSource() {
+        return update(mEtaSource, mNowMs += SECOND_MS);
+    }
+
+    /**
+     * A request and a new snapshot on every frame; the worst case.
+     */
+    @Benchmark
+    public float etaSourceRequestEveryFrame() {
+        return update(mEveryFrameEtaSource, mNowMs += SECOND_MS);
+    }
+
+    private float update(EtaSource etaSource, long nowMs) {
+        etaSource.refreshIfDue(nowMs);
+        mTrajectoryTime.setEtaOffsetMs(etaSource.getTravelTimeMs(nowMs));
+        mTrajectoryTime.update(nowMs, 0);
+        return sum(mTrajectoryTime);
+    }
+
+    private static float sum(TrajectoryTime trajectoryTime) {
+        HandRotations current = trajectoryTime.getCurrentRotations();
+        HandRotations shifted = trajectoryTime.getShiftedRotations();
+        return current.hoursRotation + current.minutesRotation
+                + shifted.hoursRotation + shifted.minutesRotation;
+    }
+}
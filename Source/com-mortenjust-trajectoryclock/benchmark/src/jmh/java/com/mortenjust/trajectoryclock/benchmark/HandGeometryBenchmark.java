@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mortenjust.trajectoryclock.benchmark;
+
+import com.mortenjust.trajectoryclock.core.HandGeometry;
+import com.mortenjust.trajectoryclock.core.HandRotations;
+import com.mortenjust.trajectoryclock.core.TrajectoryTime;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of placing the six hands (current and trajectory hour, minute and second) of one frame,
+ * without the drawing itself. The rotation benchmark does what the canvas does for
+ * {@code save(); rotate(); draw; restore();}: concatenate a rotation about the center onto the
+ * current matrix and map the hand through it. Frame times with the hands actually drawn come
+ * from the 2-background engine's dump and the render harness, switching {@code HAND_DRAWING}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HandGeometryBenchmark {
+
+    private static final long SECOND_MS = TimeUnit.SECONDS.toMillis(1);
+
+    /* A 320x320 watch, with the hand lengths the 2-background engine uses. */
+    private static final float CENTER = 160;
+    private static final float HOUR_HAND_LENGTH = CENTER * 0.5f;
+    private static final float MINUTE_HAND_LENGTH = CENTER * 0.75f;
+    private static final float SECOND_HAND_LENGTH = CENTER * 0.875f;
+    private static final float CAP_RADIUS = 4;
+
+    private final HandGeometry mHandGeometry = new HandGeometry();
+    private final TrajectoryTime mTrajectoryTime = new TrajectoryTime(75);
+    private final float[] mMatrix = new float[9];
+    private final float[] mSavedMatrix = new float[9];
+    private final float[] mRotation = new float[9];
+    private final float[] mConcat = new float[9];
+    private long mNowMs;
+
+    @Setup
+    public void setUp() {
+        mHandGeometry.setUp(CENTER, CENTER, HOUR_HAND_LENGTH - CAP_RADIUS,
+                MINUTE_HAND_LENGTH - CAP_RADIUS, CAP_RADIUS, SECOND_HAND_LENGTH);
+        setIdentity(mMatrix);
+        mNowMs = System.currentTimeMillis();
+    }
+
+    @Benchmark
+    public float geometryTable() {
+        mTrajectoryTime.update(mNowMs += SECOND_MS, 0);
+        return table(mTrajectoryTime.getShiftedRotations())
+                + table(mTrajectoryTime.getCurrentRotations());
+    }
+
+    @Benchmark
+    public float sinCos() {
+        mTrajectoryTime.update(mNowMs += SECOND_MS, 0);
+        return sinCos(mTrajectoryTime.getShiftedRotations())
+                + sinCos(mTrajectoryTime.getCurrentRotations());
+    }
+
+    @Benchmark
+    public float canvasRotate() {
+        mTrajectoryTime.update(mNowMs += SECOND_MS, 0);
+        return rotate(mTrajectoryTime.getShiftedRotations())
+                + rotate(mTrajectoryTime.getCurrentRotations());
+    }
+
+    private float table(HandRotations r) {
+        HandGeometry g = mHandGeometry;
+        int hourIndex = HandGeometry.hourIndex(r);
+        return g.getHourX(hourIndex) + g.getHourY(hourIndex)
+                + g.getMinuteX(r.minute) + g.getMinuteY(r.minute)
+                + g.getSecondStartX(r.second) + g.getSecondStartY(r.second)
+                + g.getSecondEndX(r.second) + g.getSecondEndY(r.second);
+    }
+
+    private static float sinCos(HandRotations r) {
+        return sinCosEndpoint(r.hoursRotation, HOUR_HAND_LENGTH - CAP_RADIUS)
+                + sinCosEndpoint(r.minutesRotation, MINUTE_HAND_LENGTH - CAP_RADIUS)
+                + sinCosEndpoint(r.secondsRotation, CAP_RADIUS)
+                + sinCosEndpoint(r.secondsRotation, SECOND_HAND_LENGTH);
+    }
+
+    private static float sinCosEndpoint(float degrees, float length) {
+        double radians = Math.toRadians(degrees);
+        return (float) (CENTER + length * Math.sin(radians))
+                + (float) (CENTER - length * Math.cos(radians));
+    }
+
+    /**
+     * One save/rotate/restore per hand, with the hand's two ends mapped through the rotated
+     * matrix, as in the engine's shape drawing.
+     */
+    private float rotate(HandRotations r) {
+        return rotatedHand(r.hoursRotation, HOUR_HAND_LENGTH)
+                + rotatedHand(r.minutesRotation, MINUTE_HAND_LENGTH)
+                + rotatedHand(r.secondsRotation, SECOND_HAND_LENGTH);
+    }
+
+    private float rotatedHand(float degrees, float length) {
+        System.arraycopy(mMatrix, 0, mSavedMatrix, 0, 9);
+        setRotate(mRotation, degrees, CENTER, CENTER);
+        concat(mMatrix, mRotation, mConcat);
+        System.arraycopy(mConcat, 0, mMatrix, 0, 9);
+        float sum = mapX(mMatrix, CENTER, CENTER - CAP_RADIUS)
+                + mapY(mMatrix, CENTER, CENTER - CAP_RADIUS)
+                + mapX(mMatrix, CENTER, CENTER - length)
+                + mapY(mMatrix, CENTER, CENTER - length);
+        System.arraycopy(mSavedMatrix, 0, mMatrix, 0, 9);
+        return sum;
+    }
+
+    private static void setIdentity(float[] m) {
+        for (int i = 0; i < 9; i++) {
+            m[i] = i % 4 == 0 ? 1 : 0;
+        }
+    }
+
+    private static void setRotate(float[] m, float degrees, float px, float py) {
+        double radians = Math.toRadians(degrees);
+        float sin = (float) Math.sin(radians);
+        float cos = (float) Math.cos(radians);
+        m[0] = cos;
+        m[1] = -sin;
+        m[2] = sin * py + (1 - cos) * px;
+        m[3] = sin;
+        m[4] = cos;
+        m[5] = -sin * px + (1 - cos) * py;
+        m[6] = 0;
+        m[7] = 0;
+        m[8] = 1;
+    }
+
+    private static void concat(float[] a, float[] b, float[] out) {
+        for (int row = 0; row < 3; row++) {
+            for (int col = 0; col < 3; col++) {
+                out[row * 3 + col] = a[row * 3] * b[col] + a[row * 3 + 1] * b[3 + col]
+                        + a[row * 3 + 2] * b[6 + col];
+            }
+        }
+    }
+
+    private static float mapX(float[] m, float x, float y) {
+        return m[0] * x + m[1] * y + m[2];
+    }
+
+    private static float mapY(float[] m, float x, float y) {
+        return m[3] * x + m[4] * y + m[5];
+    }
+}
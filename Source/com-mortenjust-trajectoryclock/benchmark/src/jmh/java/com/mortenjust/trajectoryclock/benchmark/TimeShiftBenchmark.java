@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mortenjust.trajectoryclock.benchmark;
+
+import com.mortenjust.trajectoryclock.core.HandRotations;
+import com.mortenjust.trajectoryclock.core.TrajectoryTime;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of computing the current and the trajectory (now + ETA) hand rotations for one frame.
+ * Every benchmark returns the sum of the hour and minute rotations of both hand sets so the work
+ * can't be optimized away. Each invocation advances the clock by a second, like the watch face.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TimeShiftBenchmark {
+
+    private static final int ETA_MINUTES = 75;
+    private static final long ETA_MS = TimeUnit.MINUTES.toMillis(ETA_MINUTES);
+    private static final long SECOND_MS = TimeUnit.SECONDS.toMillis(1);
+
+    /* A zone with daylight saving, so offset lookups are not trivially constant. */
+    private static final String ZONE_ID = "Europe/Copenhagen";
+
+    private long mNowMs;
+    private TimeZone mTimeZone;
+    private ZoneId mZoneId;
+    private TrajectoryTime mTrajectoryTime;
+    /* One cache per hand set, since now and now + ETA usually fall in different windows. */
+    private CachedZoneOffset mCachedZoneOffset;
+    private CachedZoneOffset mCachedShiftedZoneOffset;
+
+    @Setup
+    public void setUp() {
+        mTimeZone = TimeZone.getTimeZone(ZONE_ID);
+        // The legacy code uses Calendar.getInstance(), which reads the default zone.
+        TimeZone.setDefault(mTimeZone);
+        mZoneId = ZoneId.of(ZONE_ID);
+        mTrajectoryTime = new TrajectoryTime(ETA_MINUTES);
+        mCachedZoneOffset = new CachedZoneOffset(mTimeZone);
+        mCachedShiftedZoneOffset = new CachedZoneOffset(mTimeZone);
+        mNowMs = System.currentTimeMillis();
+    }
+
+    /**
+     * What the 2-background engine did before the core module: a new Time (stood in for by a
+     * GregorianCalendar on the host) and a Calendar per frame for the ETA shift, and a new
+     * rotations holder per hand set.
+     */
+    @Benchmark
+    public float calendarRoundTrip() {
+        long nowMs = mNowMs += SECOND_MS;
+
+        Calendar now = new GregorianCalendar();
+        now.setTimeInMillis(nowMs);
+
+        Calendar c = Calendar.getInstance();
+        c.setTimeInMillis(now.getTimeInMillis());
+        c.add(Calendar.MINUTE, ETA_MINUTES);
+        Calendar shifted = new GregorianCalendar();
+        shifted.setTimeInMillis(c.getTimeInMillis());
+
+        LegacyRotations current = LegacyRotations.forCalendar(now);
+        LegacyRotations trajectory = LegacyRotations.forCalendar(shifted);
+        return current.hoursRotation + current.minutesRotation
+                + trajectory.hoursRotation + trajectory.minutesRotation;
+    }
+
+    /**
+     * The core module as the engines use it: epoch arithmetic with two zone offset lookups.
+     */
+    @Benchmark
+    public float epochArithmetic() {
+        mTrajectoryTime.update(mNowMs += SECOND_MS, mTimeZone);
+        return sum(mTrajectoryTime);
+    }
+
+    /**
+     * Epoch arithmetic with the zone offsets taken from a cache that is valid for a quarter
+     * of an hour at a time.
+     */
+    @Benchmark
+    public float epochArithmeticCachedZoneOffset() {
+        long nowMs = mNowMs += SECOND_MS;
+        mTrajectoryTime.update(nowMs, mCachedZoneOffset.getOffset(nowMs),
+                mCachedShiftedZoneOffset.getOffset(nowMs + ETA_MS));
+        return sum(mTrajectoryTime);
+    }
+
+    /**
+     * Epoch arithmetic with a fixed offset; the lower bound for any zone handling.
+     */
+    @Benchmark
+    public float epochArithmeticFixedOffset() {
+        mTrajectoryTime.update(mNowMs += SECOND_MS, 0);
+        return sum(mTrajectoryTime);
+    }
+
+    /**
+     * java.time, which isn't on the watch (API 21) but is the obvious immutable alternative.
+     */
+    @Benchmark
+    public float javaTime() {
+        ZonedDateTime now = ZonedDateTime.ofInstant(Instant.ofEpochMilli(mNowMs += SECOND_MS),
+                mZoneId);
+        ZonedDateTime shifted = now.plusMinutes(ETA_MINUTES);
+        return hoursRotation(now.getHour(), now.getMinute()) + now.getMinute() * 6f
+                + hoursRotation(shifted.getHour(), shifted.getMinute())
+                + shifted.getMinute() * 6f;
+    }
+
+    private static float sum(TrajectoryTime trajectoryTime) {
+        HandRotations current = trajectoryTime.getCurrentRotations();
+        HandRotations shifted = trajectoryTime.getShiftedRotations();
+        return current.hoursRotation + current.minutesRotation
+                + shifted.hoursRotation + shifted.minutesRotation;
+    }
+
+    private static float hoursRotation(int hour, int minute) {
+        return (hour % 12) * 30 + minute / 2f;
+    }
+
+    /**
+     * The rotations holder the engine allocated for every hand set on every frame.
+     */
+    private static final class LegacyRotations {
+        float secondsRotation;
+        float hoursRotation;
+        float minutesRotation;
+        float hourHandOffset;
+
+        static LegacyRotations forCalendar(Calendar t) {
+            LegacyRotations r = new LegacyRotations();
+            r.secondsRotation = t.get(Calendar.SECOND) * 6f;
+            r.minutesRotation = t.get(Calendar.MINUTE) * 6f;
+            r.hourHandOffset = t.get(Calendar.MINUTE) / 2f;
+            r.hoursRotation = (t.get(Calendar.HOUR_OF_DAY) * 30) + r.hourHandOffset;
+            return r;
+        }
+    }
+
+    /**
+     * Remembers the zone offset for the quarter hour it was last looked up in. Daylight saving
+     * transitions happen on quarter hour boundaries in every zone in use.
+     */
+    static final class CachedZoneOffset {
+
+        private static final long WINDOW_MS = TimeUnit.MINUTES.toMillis(15);
+
+        private final TimeZone mTimeZone;
+        private long mWindowStartMs = Long.MIN_VALUE;
+        private int mOffsetMs;
+
+        CachedZoneOffset(TimeZone timeZone) {
+            mTimeZone = timeZone;
+        }
+
+        int getOffset(long epochMs) {
+            long windowStartMs = epochMs - (epochMs % WINDOW_MS);
+            if (windowStartMs != mWindowStartMs) {
+                mWindowStartMs = windowStartMs;
+                mOffsetMs = mTimeZone.getOffset(windowStartMs);
+            }
+            return mOffsetMs;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mortenjust.trajectoryclock.common;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.AsyncTask;
+import android.os.Debug;
+import android.util.Log;
+
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decodes a background resource at the surface width on a background thread, so a surface
+ * change doesn't hold up the next frame. The face keeps drawing with the background it has, or
+ * a placeholder if it has none yet, until {@link Callback#onBackgroundLoaded} hands it the new
+ * one on the UI thread. Each background is a new bitmap that is never drawn into, so it can be
+ * swapped in with a single assignment.
+ *
+ * <p>The decoded pixels are saved in a {@link BitmapDiskCache}, so later engines with the same
+ * surface size skip decoding. A background the face has swapped out can be handed back with
+ * {@link #setSpare}, and the next load decodes into its memory instead of allocating more.
+ */
+public final class BackgroundLoader {
+
+    public interface Callback {
+        /**
+         * Called on the UI thread with a background scaled to the width last passed to
+         * {@link #load}. The callback owns the bitmap from then on.
+         */
+        void onBackgroundLoaded(Bitmap background);
+    }
+
+    private static final String TAG = "BackgroundLoader";
+
+    /**
+     * Decode the resource at full size and then scale it, holding both copies for a while.
+     */
+    public static final int DECODE_FULL_THEN_SCALE = 0;
+    /**
+     * Subsample and scale while decoding, straight to the surface width.
+     */
+    public static final int DECODE_AT_SIZE = 1;
+    /**
+     * Like {@link #DECODE_AT_SIZE}, but opaque images such as JPEGs are decoded to RGB_565 at
+     * half the memory, at the cost of some banding in smooth gradients.
+     */
+    public static final int DECODE_AT_SIZE_RGB_565 = 2;
+
+    private static final String[] DECODE_MODE_NAMES = {"fullThenScale", "atSize", "atSize565"};
+
+    private final Resources mResources;
+    private final int mResId;
+    private final int mDecodeMode;
+    private final BitmapDiskCache mCache;
+    private final Callback mCallback;
+
+    private AsyncTask<Void, Void, Bitmap> mTask;
+    private int mTaskWidth;
+    private int mTaskHeight;
+    private Bitmap mSpare;
+
+    /* Java plus native heap in use, sampled while loading; see sampleHeap. */
+    private final AtomicLong mPeakHeapBytes = new AtomicLong();
+    private final AtomicLong mPeakLoadHeapBytes = new AtomicLong();
+    private long mLoadCount;
+    private long mReuseCount;
+
+    /**
+     * @param decodeMode one of {@link #DECODE_FULL_THEN_SCALE}, {@link #DECODE_AT_SIZE} and
+     *                   {@link #DECODE_AT_SIZE_RGB_565}
+     */
+    public BackgroundLoader(Resources resources, int resId, int decodeMode, BitmapDiskCache cache,
+            Callback callback) {
+        mResources = resources;
+        mResId = resId;
+        mDecodeMode = decodeMode;
+        mCache = cache;
+        mCallback = callback;
+    }
+
+    /**
+     * Starts loading the background for a {@code width} by {@code height} surface, replacing
+     * any load for another size. Does nothing if that size is already being loaded.
+     */
+    public void load(final int width, final int height) {
+        if (mTask != null) {
+            if (mTaskWidth == width && mTaskHeight == height) {
+                return;
+            }
+            mTask.cancel(false);
+        }
+        mTaskWidth = width;
+        mTaskHeight = height;
+        mLoadCount++;
+        final Bitmap spare = mSpare;
+        mSpare = null;
+        if (spare != null) {
+            mReuseCount++;
+        }
+        final long startHeapBytes = sampleHeap(null);
+        mTask = new AsyncTask<Void, Void, Bitmap>() {
+            @Override
+            protected Bitmap doInBackground(Void... params) {
+                if (isCancelled()) {
+                    return spare;
+                }
+                String key = BitmapDiskCache.key(mResId, width, height,
+                        "scaled-" + DECODE_MODE_NAMES[mDecodeMode]);
+                AtomicLong loadPeakBytes = new AtomicLong(startHeapBytes);
+                Bitmap background = mCache.get(key, spare);
+                if (background == null) {
+                    background = decode(width, spare, loadPeakBytes);
+                    mCache.put(key, background);
+                } else if (spare != null && spare != background) {
+                    spare.recycle();
+                }
+                sampleHeap(loadPeakBytes);
+                updatePeak(mPeakLoadHeapBytes, loadPeakBytes.get() - startHeapBytes);
+                return background;
+            }
+
+            @Override
+            protected void onPostExecute(Bitmap background) {
+                mTask = null;
+                mCallback.onBackgroundLoaded(background);
+            }
+
+            @Override
+            protected void onCancelled(Bitmap background) {
+                if (background != null) {
+                    background.recycle();
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Takes a background the face no longer draws, so the next load can reuse its memory. The
+     * loader owns it from then on.
+     */
+    public void setSpare(Bitmap background) {
+        if (mSpare != null) {
+            mSpare.recycle();
+        }
+        mSpare = background;
+    }
+
+    /**
+     * Drops the load in progress, if any, e.g. when the face already has a background of the
+     * right size.
+     */
+    public void cancel() {
+        if (mTask != null) {
+            mTask.cancel(false);
+            mTask = null;
+        }
+    }
+
+    /**
+     * Drops the load in progress and the spare background, when the face is destroyed.
+     */
+    public void release() {
+        cancel();
+        setSpare(null);
+    }
+
+    public boolean isLoading() {
+        return mTask != null;
+    }
+
+    private Bitmap decode(int width, Bitmap spare, AtomicLong loadPeakBytes) {
+        if (mDecodeMode == DECODE_FULL_THEN_SCALE) {
+            if (spare != null) {
+                spare.recycle();
+            }
+            Bitmap decoded = BitmapFactory.decodeResource(mResources, mResId);
+            sampleHeap(loadPeakBytes);
+            float scale = ((float) width) / (float) decoded.getWidth();
+            Bitmap scaled = Bitmap.createScaledBitmap(decoded,
+                    (int) (decoded.getWidth() * scale), (int) (decoded.getHeight() * scale),
+                    true);
+            sampleHeap(loadPeakBytes);
+            if (scaled != decoded) {
+                decoded.recycle();
+            }
+            return scaled;
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeResource(mResources, mResId, options);
+        int sourceWidth = options.outWidth;
+        boolean opaque = "image/jpeg".equals(options.outMimeType);
+
+        options.inJustDecodeBounds = false;
+        // Subsample by the largest power of two that stays at or above the target width, then
+        // let the decoder scale the rest of the way by posing as a density change.
+        options.inSampleSize = 1;
+        while (sourceWidth / (options.inSampleSize * 2) >= width) {
+            options.inSampleSize *= 2;
+        }
+        options.inScaled = true;
+        options.inDensity = sourceWidth / options.inSampleSize;
+        options.inTargetDensity = width;
+        options.inPreferredConfig = mDecodeMode == DECODE_AT_SIZE_RGB_565 && opaque
+                ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+        // Mutable, so it can be decoded into again once the face hands it back as a spare.
+        options.inMutable = true;
+        options.inBitmap = spare;
+        Bitmap decoded;
+        try {
+            decoded = BitmapFactory.decodeResource(mResources, mResId, options);
+        } catch (IllegalArgumentException e) {
+            // The spare is too small or of the wrong kind for this background.
+            Log.d(TAG, "Couldn't reuse the spare background", e);
+            if (spare != null) {
+                spare.recycle();
+            }
+            options.inBitmap = null;
+            decoded = BitmapFactory.decodeResource(mResources, mResId, options);
+        }
+        sampleHeap(loadPeakBytes);
+        return decoded;
+    }
+
+    /**
+     * Returns the Java and native heap in use and raises the overall peak and, if not null, the
+     * peak of the current load. Bitmap pixels are on the Java heap up to Android 7.1 and on the
+     * native heap after, so the sum covers both.
+     */
+    private long sampleHeap(AtomicLong loadPeakBytes) {
+        Runtime runtime = Runtime.getRuntime();
+        long bytes = runtime.totalMemory() - runtime.freeMemory()
+                + Debug.getNativeHeapAllocatedSize();
+        updatePeak(mPeakHeapBytes, bytes);
+        if (loadPeakBytes != null) {
+            updatePeak(loadPeakBytes, bytes);
+        }
+        return bytes;
+    }
+
+    private static void updatePeak(AtomicLong peak, long bytes) {
+        long current = peak.get();
+        while (bytes > current && !peak.compareAndSet(current, bytes)) {
+            current = peak.get();
+        }
+    }
+
+    public void dump(String prefix, PrintWriter out) {
+        out.print(prefix);
+        out.println("backgroundLoader mode=" + DECODE_MODE_NAMES[mDecodeMode] + " loads="
+                + mLoadCount + " spareReuses=" + mReuseCount + " peakHeap="
+                + mPeakHeapBytes.get() / 1024 + "KB peakAboveLoadStart="
+                + mPeakLoadHeapBytes.get() / 1024 + "KB");
+    }
+}
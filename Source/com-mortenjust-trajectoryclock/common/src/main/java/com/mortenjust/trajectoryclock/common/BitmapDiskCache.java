@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mortenjust.trajectoryclock.common;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import com.mortenjust.trajectoryclock.core.RawPixelFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Prepared bitmaps, such as a background scaled to the surface or its ambient copy, saved in the
+ * app's cache directory as raw pixels. A hit maps the file and copies its pixels into a new
+ * bitmap, with no decoding or scaling. Entries are stamped with the time the app was last
+ * updated, so new resources never hit pixels prepared from old ones.
+ *
+ * <p>Shared by every engine in the process. {@link #get} and {@link #put} do file I/O and are
+ * meant for background threads; they can be called from several at once.
+ */
+public final class BitmapDiskCache {
+
+    private static final String TAG = "BitmapDiskCache";
+
+    /* The pixel formats in the files. Fixed codes, as the order of Bitmap.Config may change. */
+    private static final int FORMAT_ALPHA_8 = 1;
+    private static final int FORMAT_RGB_565 = 2;
+    private static final int FORMAT_ARGB_4444 = 3;
+    private static final int FORMAT_ARGB_8888 = 4;
+
+    private static BitmapDiskCache sInstance;
+
+    private final File mDir;
+    private final long mStamp;
+
+    private final AtomicLong mHitCount = new AtomicLong();
+    private final AtomicLong mMissCount = new AtomicLong();
+    private final AtomicLong mWriteCount = new AtomicLong();
+
+    public static synchronized BitmapDiskCache getInstance(Context context) {
+        if (sInstance == null) {
+            Context app = context.getApplicationContext();
+            long stamp;
+            try {
+                stamp = app.getPackageManager().getPackageInfo(app.getPackageName(), 0)
+                        .lastUpdateTime;
+            } catch (PackageManager.NameNotFoundException e) {
+                stamp = 0;
+            }
+            sInstance = new BitmapDiskCache(new File(app.getCacheDir(), "bitmaps"), stamp);
+        }
+        return sInstance;
+    }
+
+    private BitmapDiskCache(File dir, long stamp) {
+        mDir = dir;
+        mStamp = stamp;
+    }
+
+    /**
+     * Returns the key for resource {@code resId} prepared for a {@code width} by {@code height}
+     * surface with the named {@code transform}, such as "scaled" or "gray".
+     */
+    public static String key(int resId, int width, int height, String transform) {
+        return Integer.toHexString(resId) + "-" + width + "x" + height + "-" + transform;
+    }
+
+    /**
+     * Returns a bitmap with the pixels saved under {@code key}, or null on a miss. On a hit,
+     * {@code reuse} is reconfigured to hold the pixels if it is mutable and big enough, and a
+     * new bitmap is allocated otherwise. A {@code reuse} bitmap that doesn't get returned is
+     * left for the caller, possibly reconfigured.
+     */
+    public Bitmap get(String key, Bitmap reuse) {
+        try {
+            RawPixelFile file = RawPixelFile.map(fileFor(key), mStamp);
+            Bitmap.Config config = file == null ? null : configOf(file.getFormat());
+            if (config != null) {
+                Bitmap bitmap;
+                if (reuse != null && reuse.isMutable() && !reuse.isRecycled()
+                        && reuse.getAllocationByteCount() >= file.getPixels().remaining()) {
+                    reuse.reconfigure(file.getWidth(), file.getHeight(), config);
+                    bitmap = reuse;
+                } else {
+                    bitmap = Bitmap.createBitmap(file.getWidth(), file.getHeight(), config);
+                }
+                if (bitmap.getByteCount() == file.getPixels().remaining()) {
+                    bitmap.copyPixelsFromBuffer(file.getPixels());
+                    bitmap.setHasAlpha(file.hasAlpha());
+                    mHitCount.incrementAndGet();
+                    return bitmap;
+                }
+                if (bitmap != reuse) {
+                    bitmap.recycle();
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Couldn't read " + key, e);
+        }
+        mMissCount.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Saves the pixels of {@code bitmap} under {@code key}. The bitmap copies them straight into
+     * the file, without a copy on the heap. Failures are logged and otherwise ignored; the next
+     * {@link #get} is just a miss.
+     */
+    public void put(String key, final Bitmap bitmap) {
+        int format = formatOf(bitmap.getConfig());
+        if (format < 0) {
+            return;
+        }
+        try {
+            if (!mDir.isDirectory() && !mDir.mkdirs()) {
+                throw new IOException("Couldn't create " + mDir);
+            }
+            RawPixelFile.write(fileFor(key), mStamp, bitmap.getWidth(), bitmap.getHeight(),
+                    format, bitmap.hasAlpha(), bitmap.getByteCount(),
+                    new RawPixelFile.PixelSource() {
+                        @Override
+                        public void copyTo(ByteBuffer buffer) {
+                            bitmap.copyPixelsToBuffer(buffer);
+                        }
+                    });
+            mWriteCount.incrementAndGet();
+        } catch (IOException e) {
+            Log.w(TAG, "Couldn't write " + key, e);
+        }
+    }
+
+    /**
+     * Returns the file format for {@code config}, or -1 if it has none.
+     */
+    private static int formatOf(Bitmap.Config config) {
+        if (config == null) {
+            return -1;
+        }
+        switch (config) {
+            case ALPHA_8:
+                return FORMAT_ALPHA_8;
+            case RGB_565:
+                return FORMAT_RGB_565;
+            case ARGB_4444:
+                return FORMAT_ARGB_4444;
+            case ARGB_8888:
+                return FORMAT_ARGB_8888;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Returns the config for a file {@code format}, or null for an unknown one.
+     */
+    private static Bitmap.Config configOf(int format) {
+        switch (format) {
+            case FORMAT_ALPHA_8:
+                return Bitmap.Config.ALPHA_8;
+            case FORMAT_RGB_565:
+                return Bitmap.Config.RGB_565;
+            case FORMAT_ARGB_4444:
+                return Bitmap.Config.ARGB_4444;
+            case FORMAT_ARGB_8888:
+                return Bitmap.Config.ARGB_8888;
+            default:
+                return null;
+        }
+    }
+
+    private File fileFor(String key) {
+        return new File(mDir, key + ".px");
+    }
+
+    public long getHitCount() {
+        return mHitCount.get();
+    }
+
+    public long getMissCount() {
+        return mMissCount.get();
+    }
+
+    public void dump(String prefix, PrintWriter out) {
+        out.print(prefix);
+        out.println("bitmapDiskCache hits=" + mHitCount.get() + " misses=" + mMissCount.get()
+                + " writes=" + mWriteCount.get());
+    }
+}
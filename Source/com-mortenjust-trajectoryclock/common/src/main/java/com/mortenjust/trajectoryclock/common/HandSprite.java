@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mortenjust.trajectoryclock.common;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+
+/**
+ * A single watch hand rasterized once, pointing at 12 o'clock, including its shadow. Drawing it
+ * is a bitmap blit through a rotation matrix, so the shadow blur is only paid when the sprite is
+ * built rather than on every frame.
+ */
+public final class HandSprite {
+
+    private final Bitmap mBitmap;
+    /* Where the center of the watch face is within the bitmap. */
+    private final float mPivotX;
+    private final float mPivotY;
+    private final Matrix mMatrix = new Matrix();
+
+    private HandSprite(Bitmap bitmap, float pivotX, float pivotY) {
+        mBitmap = bitmap;
+        mPivotX = pivotX;
+        mPivotY = pivotY;
+    }
+
+    /**
+     * Rasterizes a rounded hand of the given length, reaching {@code capRadius} past the center.
+     */
+    public static HandSprite roundRect(float length, float capRadius, float shadowRadius,
+            Paint paint) {
+        float padding = paddingFor(paint, shadowRadius);
+        int width = (int) Math.ceil(2 * (capRadius + padding));
+        int height = (int) Math.ceil(length + capRadius + 2 * padding);
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        float pivotX = width / 2f;
+        float pivotY = padding + length;
+
+        Canvas canvas = new Canvas(bitmap);
+        canvas.drawRoundRect(pivotX - capRadius, pivotY - length, pivotX + capRadius,
+                pivotY + capRadius, capRadius, capRadius, paint);
+        return new HandSprite(bitmap, pivotX, pivotY);
+    }
+
+    /**
+     * Rasterizes a straight hand from {@code startRadius} out to {@code endRadius} from the
+     * center.
+     */
+    public static HandSprite line(float startRadius, float endRadius, float shadowRadius,
+            Paint paint) {
+        float padding = paddingFor(paint, shadowRadius);
+        int width = (int) Math.ceil(2 * padding);
+        int height = (int) Math.ceil(endRadius + 2 * padding);
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        float pivotX = width / 2f;
+        float pivotY = padding + endRadius;
+
+        Canvas canvas = new Canvas(bitmap);
+        canvas.drawLine(pivotX, pivotY - startRadius, pivotX, pivotY - endRadius, paint);
+        return new HandSprite(bitmap, pivotX, pivotY);
+    }
+
+    /**
+     * Rasterizes a circle centered on the watch face, e.g. the cap covering the hand pivots.
+     */
+    public static HandSprite circle(float radius, float shadowRadius, Paint paint) {
+        float padding = paddingFor(paint, shadowRadius);
+        int size = (int) Math.ceil(2 * (radius + padding));
+        Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        float pivot = size / 2f;
+
+        Canvas canvas = new Canvas(bitmap);
+        canvas.drawCircle(pivot, pivot, radius, paint);
+        return new HandSprite(bitmap, pivot, pivot);
+    }
+
+    /**
+     * Room around the shape for the stroke, the shadow blur and a pixel of anti-aliasing. The
+     * blur reaches somewhat further than its radius, hence the factor of two. The shadow radius
+     * is passed in because {@link Paint} has no getter for it on API 21.
+     */
+    private static float paddingFor(Paint paint, float shadowRadius) {
+        return paint.getStrokeWidth() + 2 * shadowRadius + 1f;
+    }
+
+    /**
+     * Draws the hand rotated {@code degrees} clockwise around ({@code centerX}, {@code centerY}).
+     * Pass a paint with {@link Paint#FILTER_BITMAP_FLAG} set to keep rotated edges smooth.
+     */
+    public void draw(Canvas canvas, float degrees, float centerX, float centerY, Paint paint) {
+        mMatrix.setTranslate(centerX - mPivotX, centerY - mPivotY);
+        mMatrix.postRotate(degrees, centerX, centerY);
+        canvas.drawBitmap(mBitmap, mMatrix, paint);
+    }
+
+    public int getByteCount() {
+        return mBitmap.getByteCount();
+    }
+
+    public void recycle() {
+        mBitmap.recycle();
+    }
+}
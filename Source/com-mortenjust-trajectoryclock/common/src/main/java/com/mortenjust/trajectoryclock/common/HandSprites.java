@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mortenjust.trajectoryclock.common;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+/**
+ * The hour, minute and second hands (and optionally the center cap) for one {@link Paint},
+ * rasterized once per surface size. Build a new set in {@code onSurfaceChanged} and whenever the
+ * paint changes, and {@link #recycle()} the old one.
+ */
+public final class HandSprites {
+
+    private final HandSprite mHourHand;
+    private final HandSprite mMinuteHand;
+    private final HandSprite mSecondHand;
+    private final HandSprite mCap;
+
+    private final Paint mSpritePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    private HandSprites(HandSprite hourHand, HandSprite minuteHand, HandSprite secondHand,
+            HandSprite cap) {
+        mHourHand = hourHand;
+        mMinuteHand = minuteHand;
+        mSecondHand = secondHand;
+        mCap = cap;
+    }
+
+    /**
+     * Rounded hour and minute hands, a straight second hand starting at the cap and a cap circle,
+     * as drawn by the trajectory and palette faces.
+     */
+    public static HandSprites roundHands(float hourHandLength, float minuteHandLength,
+            float secondHandLength, float capRadius, float shadowRadius, Paint paint) {
+        return new HandSprites(
+                HandSprite.roundRect(hourHandLength, capRadius, shadowRadius, paint),
+                HandSprite.roundRect(minuteHandLength, capRadius, shadowRadius, paint),
+                HandSprite.line(capRadius, secondHandLength, shadowRadius, paint),
+                HandSprite.circle(capRadius, shadowRadius, paint));
+    }
+
+    /**
+     * Three straight hands from the center, as drawn by the base face. There is no cap.
+     */
+    public static HandSprites lineHands(float hourHandLength, float minuteHandLength,
+            float secondHandLength, Paint paint) {
+        return new HandSprites(
+                HandSprite.line(0, hourHandLength, 0, paint),
+                HandSprite.line(0, minuteHandLength, 0, paint),
+                HandSprite.line(0, secondHandLength, 0, paint),
+                null);
+    }
+
+    /**
+     * Turns bitmap filtering off for low-bit ambient mode, where intermediate colors can't be
+     * shown anyway.
+     */
+    public void setFilterBitmap(boolean filter) {
+        mSpritePaint.setFilterBitmap(filter);
+    }
+
+    public void draw(Canvas canvas, float hoursRotation, float minutesRotation,
+            float secondsRotation, boolean drawSecondHand, float centerX, float centerY) {
+        drawHourAndMinuteHands(canvas, hoursRotation, minutesRotation, centerX, centerY);
+        if (drawSecondHand) {
+            drawSecondHand(canvas, secondsRotation, centerX, centerY);
+        }
+    }
+
+    public void drawHourAndMinuteHands(Canvas canvas, float hoursRotation, float minutesRotation,
+            float centerX, float centerY) {
+        mHourHand.draw(canvas, hoursRotation, centerX, centerY, mSpritePaint);
+        mMinuteHand.draw(canvas, minutesRotation, centerX, centerY, mSpritePaint);
+    }
+
+    public void drawSecondHand(Canvas canvas, float secondsRotation, float centerX,
+            float centerY) {
+        mSecondHand.draw(canvas, secondsRotation, centerX, centerY, mSpritePaint);
+    }
+
+    public void drawCap(Canvas canvas, float centerX, float centerY) {
+        if (mCap != null) {
+            mCap.draw(canvas, 0, centerX, centerY, mSpritePaint);
+        }
+    }
+
+    public int getByteCount() {
+        int bytes = mHourHand.getByteCount() + mMinuteHand.getByteCount()
+                + mSecondHand.getByteCount();
+        return mCap != null ? bytes + mCap.getByteCount() : bytes;
+    }
+
+    public void recycle() {
+        mHourHand.recycle();
+        mMinuteHand.recycle();
+        mSecondHand.recycle();
+        if (mCap != null) {
+            mCap.recycle();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mortenjust.trajectoryclock.common;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.util.Log;
+
+/**
+ * Offscreen copy of everything on a face that only changes once a minute, such as the background
+ * and the hour and minute hands. A frame where nothing but the seconds changed is then a single
+ * blit plus the second hands, and an ambient frame is a single blit.
+ */
+public final class MinuteLayer {
+
+    private static final String TAG = "MinuteLayer";
+
+    private Bitmap mBitmap;
+    private Canvas mCanvas;
+
+    private boolean mValid;
+    private long mMinuteKey;
+    private long mEtaOffsetMs;
+    private boolean mAmbient;
+
+    private long mRebuildCount;
+    private long mCheapFrameCount;
+    private long mCheapFramesSinceRebuild;
+
+    private int mWidth;
+    private int mHeight;
+
+    /**
+     * Sets the size of the layer. The bitmap is allocated by the first frame that needs it, so
+     * a layer only used in ambient mode costs nothing until then.
+     */
+    public void setSize(int width, int height) {
+        if (mBitmap != null && (mBitmap.getWidth() != width || mBitmap.getHeight() != height)) {
+            mBitmap.recycle();
+            mBitmap = null;
+            mCanvas = null;
+        }
+        mWidth = width;
+        mHeight = height;
+        invalidate();
+    }
+
+    /**
+     * Forces a rebuild on the next frame, e.g. after the time zone or a paint changed.
+     */
+    public void invalidate() {
+        mValid = false;
+    }
+
+    /**
+     * Returns the canvas to redraw the layer into if the minute key, the ETA or the ambient state
+     * differs from what the layer was last built for, or null if the cached layer can be used as
+     * is. The key changes whenever any hand in the layer can move, e.g.
+     * {@code TrajectoryTime.getMinuteKey()}. Also counts the frame as a rebuild or a cheap
+     * frame.
+     */
+    public Canvas beginFrame(long minuteKey, long etaOffsetMs, boolean ambient) {
+        if (mValid && minuteKey == mMinuteKey && etaOffsetMs == mEtaOffsetMs
+                && ambient == mAmbient) {
+            mCheapFrameCount++;
+            mCheapFramesSinceRebuild++;
+            return null;
+        }
+        mValid = true;
+        mMinuteKey = minuteKey;
+        mEtaOffsetMs = etaOffsetMs;
+        mAmbient = ambient;
+        mRebuildCount++;
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Rebuild #" + mRebuildCount + " after " + mCheapFramesSinceRebuild
+                    + " cheap frames (" + mCheapFrameCount + " in total)");
+        }
+        mCheapFramesSinceRebuild = 0;
+        if (mBitmap == null) {
+            mBitmap = Bitmap.createBitmap(mWidth, mHeight, Bitmap.Config.ARGB_8888);
+            mCanvas = new Canvas(mBitmap);
+        }
+        // The background may not cover a non-square surface, so clear what the old hands left.
+        mCanvas.drawColor(Color.BLACK);
+        return mCanvas;
+    }
+
+    public void draw(Canvas canvas, Paint paint) {
+        canvas.drawBitmap(mBitmap, 0, 0, paint);
+    }
+
+    public long getRebuildCount() {
+        return mRebuildCount;
+    }
+
+    public long getCheapFrameCount() {
+        return mCheapFrameCount;
+    }
+
+    public int getByteCount() {
+        return mBitmap == null ? 0 : mBitmap.getByteCount();
+    }
+
+    public void recycle() {
+        if (mBitmap != null) {
+            mBitmap.recycle();
+            mBitmap = null;
+            mCanvas = null;
+        }
+        invalidate();
+    }
+}
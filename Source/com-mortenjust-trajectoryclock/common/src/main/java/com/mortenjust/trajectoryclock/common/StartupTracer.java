@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mortenjust.trajectoryclock.common;
+
+import android.os.Trace;
+import android.util.Log;
+
+import com.mortenjust.trajectoryclock.core.StartupTrace;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * Records the startup of an engine in a {@link StartupTrace} and as systrace sections, so the
+ * phases show up both in {@code dump} and next to the rest of the system in a trace. Create it
+ * as an engine field, so it starts when {@code onCreateEngine} creates the engine, and call
+ * {@link #finish} after the first frame; the trace is logged once then. Call from the UI thread
+ * only.
+ */
+public final class StartupTracer {
+
+    private static final String TAG = "StartupTracer";
+
+    private final String mFaceName;
+    private final StartupTrace mTrace = new StartupTrace(System.nanoTime());
+
+    public StartupTracer(String faceName) {
+        mFaceName = faceName;
+    }
+
+    /**
+     * Starts a phase, ending the one in progress, if any.
+     */
+    public void begin(String phase) {
+        if (mTrace.isFinished()) {
+            return;
+        }
+        end();
+        Trace.beginSection(phase);
+        mTrace.beginPhase(phase, System.nanoTime());
+    }
+
+    public void end() {
+        if (mTrace.hasOpenPhase()) {
+            mTrace.endPhase(System.nanoTime());
+            Trace.endSection();
+        }
+    }
+
+    public void milestone(String name) {
+        mTrace.milestone(name, System.nanoTime());
+    }
+
+    public boolean isFinished() {
+        return mTrace.isFinished();
+    }
+
+    public void finish() {
+        if (mTrace.isFinished()) {
+            return;
+        }
+        end();
+        mTrace.finish(System.nanoTime());
+        StringWriter trace = new StringWriter();
+        mTrace.dump(mFaceName + " ", new PrintWriter(trace));
+        Log.i(TAG, trace.toString());
+    }
+
+    public StartupTrace getTrace() {
+        return mTrace;
+    }
+
+    public void dump(String prefix, PrintWriter out) {
+        mTrace.dump(prefix, out);
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mortenjust.trajectoryclock.common;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.mortenjust.trajectoryclock.core.LatencyHistogram;
+import com.mortenjust.trajectoryclock.core.TickPlanner;
+import com.mortenjust.trajectoryclock.core.WallClock;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+
+/**
+ * One once-a-second wakeup on the main thread, shared by every engine in the process. Engines
+ * {@link #subscribe} while they show a ticking second hand and all get their tick from the same
+ * wakeup, aligned to the wall-clock second, so an engine and the picker preview next to it
+ * don't wake the watch twice.
+ *
+ * <p>The handler delay is in uptime, which drifts from the wall clock and is always a little
+ * late. A {@link TickPlanner} corrects the delays for that, and a wakeup that still comes
+ * before the second is rescheduled rather than ticked, since the faces would draw the old
+ * second.
+ *
+ * <p>Not thread safe; call it from the main thread only.
+ */
+public final class TickScheduler {
+
+    /**
+     * Receives the ticks of a {@link TickScheduler}.
+     */
+    public interface Listener {
+        /**
+         * Called on the main thread for a tick that was due at {@code scheduledMs} and ran at
+         * {@code actualMs}, both wall clock.
+         */
+        void onTick(long scheduledMs, long actualMs);
+    }
+
+    private static TickScheduler sInstance;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mTickRunnable = new Runnable() {
+        @Override
+        public void run() {
+            onWakeUp();
+        }
+    };
+
+    private final ArrayList<Listener> mListeners = new ArrayList<>();
+    /* Copy of mListeners to dispatch from, so listeners can unsubscribe in onTick. */
+    private Listener[] mDispatchListeners = new Listener[2];
+
+    private final TickPlanner mPlanner = new TickPlanner();
+    private long mMaxSubscriberCount;
+
+    public static TickScheduler getInstance() {
+        if (sInstance == null) {
+            sInstance = new TickScheduler();
+        }
+        return sInstance;
+    }
+
+    private TickScheduler() {
+    }
+
+    /**
+     * Adds a listener, starting the wakeups if it is the first. Returns false if it was already
+     * subscribed, so callers can subscribe on every state change without extra ticks.
+     */
+    public boolean subscribe(Listener listener) {
+        if (mListeners.contains(listener)) {
+            return false;
+        }
+        mListeners.add(listener);
+        mMaxSubscriberCount = Math.max(mMaxSubscriberCount, mListeners.size());
+        if (mListeners.size() == 1) {
+            scheduleNextTick(WallClock.currentTimeMillis());
+        }
+        return true;
+    }
+
+    /**
+     * Removes a listener, stopping the wakeups if it was the last.
+     */
+    public void unsubscribe(Listener listener) {
+        if (mListeners.remove(listener) && mListeners.isEmpty()) {
+            mHandler.removeCallbacks(mTickRunnable);
+        }
+    }
+
+    private void scheduleNextTick(long nowMs) {
+        // A listener may have resubscribed from onTick and scheduled one already.
+        mHandler.removeCallbacks(mTickRunnable);
+        mHandler.postDelayed(mTickRunnable, mPlanner.scheduleNext(nowMs));
+    }
+
+    private void onWakeUp() {
+        long nowMs = WallClock.currentTimeMillis();
+        long latenessMs = mPlanner.onWakeUp(nowMs);
+        if (latenessMs < 0) {
+            // Too early for the second we are after; wait for it without ticking.
+            mHandler.postDelayed(mTickRunnable, -latenessMs);
+            return;
+        }
+
+        int count = mListeners.size();
+        if (mDispatchListeners.length < count) {
+            mDispatchListeners = new Listener[count];
+        }
+        mListeners.toArray(mDispatchListeners);
+        long scheduledMs = mPlanner.getScheduledMs();
+        for (int i = 0; i < count; i++) {
+            mDispatchListeners[i].onTick(scheduledMs, nowMs);
+            mDispatchListeners[i] = null;
+        }
+
+        if (!mListeners.isEmpty()) {
+            scheduleNextTick(nowMs);
+        }
+    }
+
+    public int getSubscriberCount() {
+        return mListeners.size();
+    }
+
+    public LatencyHistogram getLatenessHistogram() {
+        return mPlanner.getLatenessHistogram();
+    }
+
+    public void dump(String prefix, PrintWriter out) {
+        out.print(prefix);
+        out.println("subscribers=" + mListeners.size() + " maxSubscribers=" + mMaxSubscriberCount);
+        mPlanner.dump(prefix, out);
+    }
+}
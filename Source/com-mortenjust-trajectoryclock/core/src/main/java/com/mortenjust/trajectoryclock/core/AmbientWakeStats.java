@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mortenjust.trajectoryclock.core;
+
+import java.io.PrintWriter;
+
+/**
+ * How long a face keeps the watch awake drawing in ambient mode, per minute. Ambient content
+ * only changes once a minute, but the system also redraws for peek cards and other reasons, so
+ * a minute can hold any number of frames. The draw time of all frames in one minute is summed
+ * and recorded when the next minute starts, or when the face leaves ambient mode.
+ */
+public final class AmbientWakeStats {
+
+    private static final long NO_MINUTE = Long.MIN_VALUE;
+
+    private final LatencyHistogram mAwakePerMinute = new LatencyHistogram();
+
+    private long mEpochMinute = NO_MINUTE;
+    private long mMinuteAwakeNanos;
+    private int mMinuteFrames;
+
+    private long mFrameCount;
+    private long mEndedMinuteFrameCount;
+    private int mMaxFramesPerMinute;
+
+    /**
+     * Records an ambient frame drawn in {@code epochMinute} that took {@code drawNanos}.
+     */
+    public void recordFrame(long epochMinute, long drawNanos) {
+        if (epochMinute != mEpochMinute) {
+            endMinute();
+            mEpochMinute = epochMinute;
+        }
+        mMinuteAwakeNanos += drawNanos;
+        mMinuteFrames++;
+        mFrameCount++;
+    }
+
+    /**
+     * Records the minute in progress, e.g. when the face leaves ambient mode.
+     */
+    public void endMinute() {
+        if (mEpochMinute == NO_MINUTE) {
+            return;
+        }
+        mAwakePerMinute.record(mMinuteAwakeNanos);
+        mMaxFramesPerMinute = Math.max(mMaxFramesPerMinute, mMinuteFrames);
+        mEndedMinuteFrameCount += mMinuteFrames;
+        mEpochMinute = NO_MINUTE;
+        mMinuteAwakeNanos = 0;
+        mMinuteFrames = 0;
+    }
+
+    /**
+     * Returns the histogram of draw time per ambient minute; its count is the number of minutes.
+     */
+    public LatencyHistogram getAwakePerMinuteHistogram() {
+        return mAwakePerMinute;
+    }
+
+    public long getFrameCount() {
+        return mFrameCount;
+    }
+
+    public int getMaxFramesPerMinute() {
+        return mMaxFramesPerMinute;
+    }
+
+    public void dump(String prefix, PrintWriter out) {
+        long minutes = mAwakePerMinute.getCount();
+        out.print(prefix);
+        out.println("ambientMinutes=" + minutes + " frames=" + mFrameCount + " framesPerMinute="
+                + (minutes == 0 ? 0 : (float) mEndedMinuteFrameCount / minutes)
+                + " maxFramesPerMinute=" + mMaxFramesPerMinute);
+        out.print(prefix);
+        out.println("awake per minute:");
+        mAwakePerMinute.dump(prefix + "  ", out);
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mortenjust.trajectoryclock.core;
+
+import java.util.Arrays;
+
+/**
+ * Picks a vibrant and a dark muted color out of an image, like the support library's Palette,
+ * but on primitive arrays only. Pixels are counted into a histogram of 15-bit colors, which is
+ * split by median cut into at most {@code maxColors} boxes; each box becomes a swatch with the
+ * mean color of its pixels, and the vibrant and dark muted swatches are scored against the same
+ * luminance and saturation targets Palette uses. All arrays are allocated up front, so a
+ * quantizer can be reused for any number of images without allocating.
+ *
+ * <p>Not thread safe.
+ */
+public final class ColorQuantizer {
+
+    private static final int COMPONENT_BITS = 5;
+    private static final int COMPONENT_MASK = (1 << COMPONENT_BITS) - 1;
+    private static final int COLOR_COUNT = 1 << (3 * COMPONENT_BITS);
+
+    private static final int RED = 0;
+    private static final int GREEN = 1;
+    private static final int BLUE = 2;
+
+    /* Pixels darker or lighter than these say little about the image and are skipped. */
+    private static final float BLACK_MAX_LIGHTNESS = 0.05f;
+    private static final float WHITE_MIN_LIGHTNESS = 0.95f;
+
+    /* Palette's targets, as {min, target, max} for saturation and then lightness. */
+    private static final float[] VIBRANT = {0.35f, 1f, 1f, 0.3f, 0.5f, 0.7f};
+    private static final float[] DARK_MUTED = {0f, 0.3f, 0.4f, 0f, 0.26f, 0.45f};
+
+    private static final float WEIGHT_SATURATION = 3f;
+    private static final float WEIGHT_LIGHTNESS = 6f;
+    private static final float WEIGHT_POPULATION = 1f;
+
+    private final int mMaxColors;
+
+    private final int[] mHistogram = new int[COLOR_COUNT];
+    /* The 15-bit colors present in the image; each box is a range of it. */
+    private final int[] mColors = new int[COLOR_COUNT];
+    private int mColorCount;
+
+    private final int[] mBoxLower;
+    private final int[] mBoxUpper;
+    private int mBoxCount;
+
+    private final int[] mSwatchColor;
+    private final int[] mSwatchPopulation;
+    private final float[] mSwatchSaturation;
+    private final float[] mSwatchLightness;
+    private final float[] mHsl = new float[2];
+    private int mSwatchCount;
+    private int mVibrant;
+    private int mDarkMuted;
+
+    public ColorQuantizer(int maxColors) {
+        mMaxColors = maxColors;
+        mBoxLower = new int[maxColors];
+        mBoxUpper = new int[maxColors];
+        mSwatchColor = new int[maxColors];
+        mSwatchPopulation = new int[maxColors];
+        mSwatchSaturation = new float[maxColors];
+        mSwatchLightness = new float[maxColors];
+    }
+
+    /**
+     * Quantizes {@code count} ARGB pixels starting at {@code offset}, replacing the swatches of
+     * any earlier image. Mostly transparent pixels are skipped.
+     */
+    public void quantize(int[] pixels, int offset, int count) {
+        Arrays.fill(mHistogram, 0);
+        for (int i = offset; i < offset + count; i++) {
+            int pixel = pixels[i];
+            if ((pixel >>> 24) < 0x80) {
+                continue;
+            }
+            mHistogram[(((pixel >> 19) & COMPONENT_MASK) << (2 * COMPONENT_BITS))
+                    | (((pixel >> 11) & COMPONENT_MASK) << COMPONENT_BITS)
+                    | ((pixel >> 3) & COMPONENT_MASK)]++;
+        }
+
+        mColorCount = 0;
+        for (int color = 0; color < COLOR_COUNT; color++) {
+            if (mHistogram[color] == 0) {
+                continue;
+            }
+            computeHsl(toRgb(color), mHsl);
+            if (mHsl[1] <= BLACK_MAX_LIGHTNESS || mHsl[1] >= WHITE_MIN_LIGHTNESS) {
+                continue;
+            }
+            mColors[mColorCount++] = color;
+        }
+
+        mBoxCount = 0;
+        if (mColorCount > 0) {
+            mBoxLower[0] = 0;
+            mBoxUpper[0] = mColorCount - 1;
+            mBoxCount = 1;
+            while (mBoxCount < mMaxColors) {
+                int box = largestSplittableBox();
+                if (box < 0) {
+                    break;
+                }
+                splitBox(box);
+            }
+        }
+
+        mSwatchCount = 0;
+        for (int box = 0; box < mBoxCount; box++) {
+            addSwatch(box);
+        }
+        mVibrant = bestSwatch(VIBRANT, -1);
+        mDarkMuted = bestSwatch(DARK_MUTED, mVibrant);
+    }
+
+    public int getSwatchCount() {
+        return mSwatchCount;
+    }
+
+    /**
+     * Returns the opaque RGB color of swatch {@code i}.
+     */
+    public int getSwatchColor(int i) {
+        return mSwatchColor[i];
+    }
+
+    public int getSwatchPopulation(int i) {
+        return mSwatchPopulation[i];
+    }
+
+    public int getVibrantColor(int defaultColor) {
+        return mVibrant < 0 ? defaultColor : mSwatchColor[mVibrant];
+    }
+
+    public int getDarkMutedColor(int defaultColor) {
+        return mDarkMuted < 0 ? defaultColor : mSwatchColor[mDarkMuted];
+    }
+
+    /**
+     * Returns the box with the largest volume in color space that holds more than one color,
+     * or -1 if every box is a single color.
+     */
+    private int largestSplittableBox() {
+        int best = -1;
+        int bestVolume = -1;
+        for (int box = 0; box < mBoxCount; box++) {
+            if (mBoxUpper[box] == mBoxLower[box]) {
+                continue;
+            }
+            int volume = (range(box, RED) + 1) * (range(box, GREEN) + 1)
+                    * (range(box, BLUE) + 1);
+            if (volume > bestVolume) {
+                best = box;
+                bestVolume = volume;
+            }
+        }
+        return best;
+    }
+
+    private int range(int box, int component) {
+        int min = COMPONENT_MASK;
+        int max = 0;
+        for (int i = mBoxLower[box]; i <= mBoxUpper[box]; i++) {
+            int value = component(mColors[i], component);
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        return max - min;
+    }
+
+    /**
+     * Sorts the box along its longest side and splits it where half of its pixels are on
+     * either side, adding the upper half as a new box.
+     */
+    private void splitBox(int box) {
+        int lower = mBoxLower[box];
+        int upper = mBoxUpper[box];
+        int rangeRed = range(box, RED);
+        int rangeGreen = range(box, GREEN);
+        int rangeBlue = range(box, BLUE);
+        int longest = rangeRed >= rangeGreen && rangeRed >= rangeBlue ? RED
+                : rangeGreen >= rangeBlue ? GREEN : BLUE;
+
+        // Move the longest component to the top bits so a plain int sort orders by it.
+        swapComponents(lower, upper, longest);
+        Arrays.sort(mColors, lower, upper + 1);
+        swapComponents(lower, upper, longest);
+
+        int population = 0;
+        for (int i = lower; i <= upper; i++) {
+            population += mHistogram[mColors[i]];
+        }
+        int split = lower;
+        int seen = 0;
+        for (int i = lower; i <= upper; i++) {
+            seen += mHistogram[mColors[i]];
+            if (seen >= population / 2) {
+                split = i;
+                break;
+            }
+        }
+        split = Math.min(split, upper - 1);
+
+        mBoxUpper[box] = split;
+        mBoxLower[mBoxCount] = split + 1;
+        mBoxUpper[mBoxCount] = upper;
+        mBoxCount++;
+    }
+
+    /**
+     * Swaps red with {@code component} in each color of the range. Swapping twice undoes it.
+     */
+    private void swapComponents(int lower, int upper, int component) {
+        if (component == RED) {
+            return;
+        }
+        for (int i = lower; i <= upper; i++) {
+            int color = mColors[i];
+            int red = component(color, RED);
+            int other = component(color, component);
+            color &= ~((COMPONENT_MASK << shift(RED)) | (COMPONENT_MASK << shift(component)));
+            mColors[i] = color | (other << shift(RED)) | (red << shift(component));
+        }
+    }
+
+    private void addSwatch(int box) {
+        long red = 0;
+        long green = 0;
+        long blue = 0;
+        int population = 0;
+        for (int i = mBoxLower[box]; i <= mBoxUpper[box]; i++) {
+            int color = mColors[i];
+            int count = mHistogram[color];
+            red += (long) expand(component(color, RED)) * count;
+            green += (long) expand(component(color, GREEN)) * count;
+            blue += (long) expand(component(color, BLUE)) * count;
+            population += count;
+        }
+        int rgb = 0xff000000 | (int) (red / population) << 16 | (int) (green / population) << 8
+                | (int) (blue / population);
+        int swatch = mSwatchCount++;
+        mSwatchColor[swatch] = rgb;
+        mSwatchPopulation[swatch] = population;
+        computeHsl(rgb, mHsl);
+        mSwatchSaturation[swatch] = mHsl[0];
+        mSwatchLightness[swatch] = mHsl[1];
+    }
+
+    /**
+     * Returns the swatch within the {min, target, max} saturation and lightness bounds of
+     * {@code target} that scores best, other than {@code exclude}, or -1 if none is within them.
+     */
+    private int bestSwatch(float[] target, int exclude) {
+        int maxPopulation = 0;
+        for (int i = 0; i < mSwatchCount; i++) {
+            maxPopulation = Math.max(maxPopulation, mSwatchPopulation[i]);
+        }
+        int best = -1;
+        float bestScore = 0;
+        for (int i = 0; i < mSwatchCount; i++) {
+            float saturation = mSwatchSaturation[i];
+            float lightness = mSwatchLightness[i];
+            if (i == exclude || saturation < target[0] || saturation > target[2]
+                    || lightness < target[3] || lightness > target[5]) {
+                continue;
+            }
+            float score = (WEIGHT_SATURATION * (1 - Math.abs(saturation - target[1]))
+                    + WEIGHT_LIGHTNESS * (1 - Math.abs(lightness - target[4]))
+                    + WEIGHT_POPULATION * mSwatchPopulation[i] / maxPopulation)
+                    / (WEIGHT_SATURATION + WEIGHT_LIGHTNESS + WEIGHT_POPULATION);
+            if (best < 0 || score > bestScore) {
+                best = i;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    private static int shift(int component) {
+        return (2 - component) * COMPONENT_BITS;
+    }
+
+    private static int component(int color, int component) {
+        return (color >> shift(component)) & COMPONENT_MASK;
+    }
+
+    /* Widens a 5-bit component to 8 bits, so 31 maps to 255. */
+    private static int expand(int value) {
+        return (value << 3) | (value >> 2);
+    }
+
+    private static int toRgb(int color) {
+        return 0xff000000 | expand(component(color, RED)) << 16
+                | expand(component(color, GREEN)) << 8 | expand(component(color, BLUE));
+    }
+
+    /**
+     * Sets {@code out} to the HSL saturation and lightness of {@code rgb}, both 0-1.
+     */
+    static void computeHsl(int rgb, float[] out) {
+        float red = ((rgb >> 16) & 0xff) / 255f;
+        float green = ((rgb >> 8) & 0xff) / 255f;
+        float blue = (rgb & 0xff) / 255f;
+        float max = Math.max(red, Math.max(green, blue));
+        float min = Math.min(red, Math.min(green, blue));
+        float lightness = (max + min) / 2;
+        out[0] = max == min ? 0 : (max - min) / (1 - Math.abs(2 * lightness - 1));
+        out[1] = lightness;
+    }
+}
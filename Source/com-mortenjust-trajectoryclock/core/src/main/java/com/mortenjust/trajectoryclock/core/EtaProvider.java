@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mortenjust.trajectoryclock.core;
+
+/**
+ * Works out how long the trip home takes if the wearer leaves at a given time. Implementations
+ * do the work wherever suits them, but {@link #requestEta} must return right away, since it is
+ * called from the draw path.
+ */
+public interface EtaProvider {
+
+    interface Callback {
+        /**
+         * Called on any thread with the travel time for a trip starting at
+         * {@code requestTimeMs}.
+         */
+        void onEta(long requestTimeMs, long travelTimeMs);
+
+        /**
+         * Called on any thread when no travel time could be worked out for the request.
+         */
+        void onEtaUnavailable(long requestTimeMs);
+    }
+
+    /**
+     * Starts working out the travel time for a trip starting at {@code nowMs}, and reports it to
+     * {@code callback} exactly once. The callback may be called before this returns.
+     */
+    void requestEta(long nowMs, Callback callback);
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mortenjust.trajectoryclock.core;
+
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the latest travel time from an {@link EtaProvider} for the draw path. The renderer reads
+ * a snapshot with {@link #getTravelTimeMs}, which never waits for the provider, and calls
+ * {@link #refreshIfDue} to have the provider asked again once the snapshot is
+ * {@code refreshAfterMs} old. At most one request is in flight at a time, and a failed request
+ * is retried after the same interval. A snapshot more than {@code staleAfterMs} old is ignored
+ * in favor of the fallback travel time, as is the lack of one.
+ *
+ * <p>Call everything but the provider callback from the UI thread; results may arrive on any
+ * thread and are picked up by the next frame.
+ */
+public final class EtaSource {
+
+    /**
+     * A travel time and when the trip it was worked out for starts. Replaced as a whole, so the
+     * draw path always reads a matching pair.
+     */
+    public static final class Snapshot {
+        private final long mTravelTimeMs;
+        private final long mRequestTimeMs;
+
+        Snapshot(long travelTimeMs, long requestTimeMs) {
+            mTravelTimeMs = travelTimeMs;
+            mRequestTimeMs = requestTimeMs;
+        }
+
+        public long getTravelTimeMs() {
+            return mTravelTimeMs;
+        }
+
+        public long getRequestTimeMs() {
+            return mRequestTimeMs;
+        }
+    }
+
+    private static final long NEVER = Long.MIN_VALUE;
+
+    private final EtaProvider mProvider;
+    private final long mRefreshAfterMs;
+    private final long mStaleAfterMs;
+    private final long mFallbackTravelTimeMs;
+
+    private volatile Snapshot mSnapshot;
+    private final AtomicBoolean mRequestInFlight = new AtomicBoolean();
+    private long mLastRequestMs = NEVER;
+
+    private long mRequestCount;
+    private long mFallbackReadCount;
+    private final AtomicLong mResultCount = new AtomicLong();
+    private final AtomicLong mUnavailableCount = new AtomicLong();
+
+    private final EtaProvider.Callback mCallback = new EtaProvider.Callback() {
+        @Override
+        public void onEta(long requestTimeMs, long travelTimeMs) {
+            mSnapshot = new Snapshot(travelTimeMs, requestTimeMs);
+            mResultCount.incrementAndGet();
+            mRequestInFlight.set(false);
+        }
+
+        @Override
+        public void onEtaUnavailable(long requestTimeMs) {
+            mUnavailableCount.incrementAndGet();
+            mRequestInFlight.set(false);
+        }
+    };
+
+    public EtaSource(EtaProvider provider, long refreshAfterMs, long staleAfterMs,
+            long fallbackTravelTimeMs) {
+        mProvider = provider;
+        mRefreshAfterMs = refreshAfterMs;
+        mStaleAfterMs = staleAfterMs;
+        mFallbackTravelTimeMs = fallbackTravelTimeMs;
+    }
+
+    /**
+     * Asks the provider for a new travel time if the last request is at least
+     * {@code refreshAfterMs} old and none is in flight. Cheap enough for every frame.
+     */
+    public void refreshIfDue(long nowMs) {
+        long sinceLastRequestMs = nowMs - mLastRequestMs;
+        // A clock that was set back asks again rather than waiting for it to catch up.
+        if (mLastRequestMs != NEVER && sinceLastRequestMs >= 0
+                && sinceLastRequestMs < mRefreshAfterMs) {
+            return;
+        }
+        if (!mRequestInFlight.compareAndSet(false, true)) {
+            return;
+        }
+        mLastRequestMs = nowMs;
+        mRequestCount++;
+        mProvider.requestEta(nowMs, mCallback);
+    }
+
+    /**
+     * Returns the travel time to draw at {@code nowMs}: the latest result, or the fallback if
+     * there is none or it is too old to trust.
+     */
+    public long getTravelTimeMs(long nowMs) {
+        Snapshot snapshot = mSnapshot;
+        if (snapshot == null || nowMs - snapshot.mRequestTimeMs > mStaleAfterMs) {
+            mFallbackReadCount++;
+            return mFallbackTravelTimeMs;
+        }
+        return snapshot.mTravelTimeMs;
+    }
+
+    /**
+     * Returns the latest result, whatever its age, or null if there is none yet.
+     */
+    public Snapshot getSnapshot() {
+        return mSnapshot;
+    }
+
+    public boolean isRequestInFlight() {
+        return mRequestInFlight.get();
+    }
+
+    public long getRequestCount() {
+        return mRequestCount;
+    }
+
+    public long getFallbackReadCount() {
+        return mFallbackReadCount;
+    }
+
+    public void dump(String prefix, long nowMs, PrintWriter out) {
+        Snapshot snapshot = mSnapshot;
+        out.print(prefix);
+        out.println("eta travel="
+                + (snapshot == null ? "none" : TimeUnit.MILLISECONDS.toSeconds(
+                        snapshot.mTravelTimeMs) + "s age="
+                        + TimeUnit.MILLISECONDS.toSeconds(nowMs - snapshot.mRequestTimeMs) + "s")
+                + " requests=" + mRequestCount + " results=" + mResultCount.get()
+                + " unavailable=" + mUnavailableCount.get() + " inFlight="
+                + mRequestInFlight.get() + " fallbackReads=" + mFallbackReadCount);
+    }
+}
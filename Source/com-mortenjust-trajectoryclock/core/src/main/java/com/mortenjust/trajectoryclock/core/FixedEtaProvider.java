@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mortenjust.trajectoryclock.core;
+
+/**
+ * Answers every request at once with the same travel time; what the face showed before it had
+ * any routing.
+ */
+public final class FixedEtaProvider implements EtaProvider {
+
+    private final long mTravelTimeMs;
+
+    public FixedEtaProvider(long travelTimeMs) {
+        mTravelTimeMs = travelTimeMs;
+    }
+
+    @Override
+    public void requestEta(long nowMs, Callback callback) {
+        callback.onEta(nowMs, mTravelTimeMs);
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mortenjust.trajectoryclock.core;
+
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides which vsyncs a sweeping watch face draws on. The face runs at one of a fixed list of
+ * frame rates, fastest first. It steps down a rate when the mean draw time over a window of
+ * frames goes over the budget, steps back up when it falls under half the budget, and stays at
+ * the slowest rate while the battery is low.
+ *
+ * <pre>
+ * // For every vsync, e.g. from a Choreographer.FrameCallback:
+ * if (pacer.onVsync(frameTimeNanos)) {
+ *     invalidate();
+ * }
+ * // At the end of onDraw:
+ * pacer.recordFrame(System.nanoTime(), drawNanos);
+ * </pre>
+ *
+ * Nothing here allocates after construction.
+ */
+public final class FramePacer {
+
+    private static final long SECOND_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /* Vsyncs jitter; accept one up to half a 60 Hz frame early rather than wait a whole one. */
+    private static final long VSYNC_SLACK_NANOS = SECOND_NANOS / 120;
+
+    /* Frames averaged before the rate is reconsidered. */
+    private static final int WINDOW_FRAMES = 30;
+
+    private final int[] mFrameRates;
+    private final long mBudgetNanos;
+
+    private int mRateIndex;
+    private boolean mLowBattery;
+    private long mNextFrameNanos;
+
+    private long mWindowDrawNanos;
+    private int mWindowFrames;
+
+    private long mFpsWindowStartNanos;
+    private int mFpsWindowFrames;
+    private float mAchievedFps;
+
+    private long mFrameCount;
+    private long mMissedFrameCount;
+    private long mRateChangeCount;
+
+    /**
+     * @param budgetNanos the mean draw time above which the face slows down
+     * @param frameRates the rates to choose from in frames per second, fastest first. Divisors
+     *         of 60 keep the frames evenly spaced on a 60 Hz display.
+     */
+    public FramePacer(long budgetNanos, int... frameRates) {
+        if (frameRates.length == 0) {
+            throw new IllegalArgumentException("No frame rates");
+        }
+        mBudgetNanos = budgetNanos;
+        mFrameRates = frameRates;
+    }
+
+    /**
+     * Starts pacing from the fastest rate the battery allows, e.g. when the face becomes
+     * visible.
+     */
+    public void reset() {
+        mRateIndex = mLowBattery ? mFrameRates.length - 1 : 0;
+        mNextFrameNanos = 0;
+        mWindowDrawNanos = 0;
+        mWindowFrames = 0;
+        mFpsWindowStartNanos = 0;
+        mFpsWindowFrames = 0;
+        mAchievedFps = 0;
+    }
+
+    public void setLowBattery(boolean lowBattery) {
+        mLowBattery = lowBattery;
+        if (lowBattery) {
+            setRateIndex(mFrameRates.length - 1);
+        }
+    }
+
+    /**
+     * Returns whether to draw a frame for the vsync at {@code frameTimeNanos}, on the
+     * {@link System#nanoTime} time base.
+     */
+    public boolean onVsync(long frameTimeNanos) {
+        if (frameTimeNanos < mNextFrameNanos - VSYNC_SLACK_NANOS) {
+            return false;
+        }
+        long intervalNanos = getFrameIntervalNanos();
+        if (mNextFrameNanos != 0) {
+            // Whole frame slots that passed without a vsync to draw on.
+            mMissedFrameCount += (frameTimeNanos - mNextFrameNanos + VSYNC_SLACK_NANOS)
+                    / intervalNanos;
+        }
+        // Stay on the original schedule unless we fell behind it.
+        mNextFrameNanos = Math.max(mNextFrameNanos, frameTimeNanos) + intervalNanos;
+        return true;
+    }
+
+    /**
+     * Records a drawn frame that ended at {@code endNanos} and took {@code drawNanos}.
+     */
+    public void recordFrame(long endNanos, long drawNanos) {
+        mFrameCount++;
+
+        if (mFpsWindowStartNanos == 0) {
+            mFpsWindowStartNanos = endNanos;
+        } else {
+            mFpsWindowFrames++;
+            long elapsedNanos = endNanos - mFpsWindowStartNanos;
+            if (elapsedNanos >= SECOND_NANOS) {
+                mAchievedFps = (float) mFpsWindowFrames * SECOND_NANOS / elapsedNanos;
+                mFpsWindowStartNanos = endNanos;
+                mFpsWindowFrames = 0;
+            }
+        }
+
+        mWindowDrawNanos += drawNanos;
+        if (++mWindowFrames < WINDOW_FRAMES) {
+            return;
+        }
+        long meanNanos = mWindowDrawNanos / mWindowFrames;
+        mWindowDrawNanos = 0;
+        mWindowFrames = 0;
+        if (meanNanos > mBudgetNanos) {
+            setRateIndex(mRateIndex + 1);
+        } else if (meanNanos < mBudgetNanos / 2 && !mLowBattery) {
+            setRateIndex(mRateIndex - 1);
+        }
+    }
+
+    private void setRateIndex(int rateIndex) {
+        rateIndex = Math.max(0, Math.min(mFrameRates.length - 1, rateIndex));
+        if (rateIndex != mRateIndex) {
+            mRateIndex = rateIndex;
+            mRateChangeCount++;
+        }
+    }
+
+    public int getTargetFps() {
+        return mFrameRates[mRateIndex];
+    }
+
+    public long getFrameIntervalNanos() {
+        return SECOND_NANOS / mFrameRates[mRateIndex];
+    }
+
+    /**
+     * Returns the frame rate measured over the last whole second of frames, or 0 before there
+     * has been one.
+     */
+    public float getAchievedFps() {
+        return mAchievedFps;
+    }
+
+    public long getFrameCount() {
+        return mFrameCount;
+    }
+
+    public long getMissedFrameCount() {
+        return mMissedFrameCount;
+    }
+
+    public void dump(String prefix, PrintWriter out) {
+        out.print(prefix);
+        out.println("targetFps=" + getTargetFps() + " achievedFps=" + mAchievedFps
+                + " budget=" + (mBudgetNanos / 1000) + "us lowBattery=" + mLowBattery);
+        out.print(prefix);
+        out.println("frames=" + mFrameCount + " missedFrames=" + mMissedFrameCount
+                + " rateChanges=" + mRateChangeCount);
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mortenjust.trajectoryclock.core;
+
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Draw-time and tick statistics for one watch face engine. A frame is split into named phases
+ * that are ended in order:
+ *
+ * <pre>
+ * stats.beginFrame();
+ * drawBackground(canvas);
+ * stats.endPhase();
+ * drawHands(canvas);
+ * stats.endPhase();
+ * stats.endFrame();
+ * </pre>
+ *
+ * Each phase and the whole frame go into their own {@link LatencyHistogram}. Nothing here
+ * allocates after construction.
+ */
+public final class FrameStats {
+
+    private static final long SECOND_MS = TimeUnit.SECONDS.toMillis(1);
+
+    private final String[] mPhaseNames;
+    private final LatencyHistogram[] mPhaseHistograms;
+    private final LatencyHistogram mFrameHistogram = new LatencyHistogram();
+
+    private long mFrameStartNanos;
+    private long mLastFrameNanos;
+    private long mPhaseStartNanos;
+    private int mPhase;
+
+    private long mTickCount;
+    private long mMissedSecondCount;
+    private long mMaxTickLatenessMs;
+
+    public FrameStats(String... phaseNames) {
+        mPhaseNames = phaseNames;
+        mPhaseHistograms = new LatencyHistogram[phaseNames.length];
+        for (int i = 0; i < phaseNames.length; i++) {
+            mPhaseHistograms[i] = new LatencyHistogram();
+        }
+    }
+
+    public void beginFrame() {
+        mFrameStartNanos = System.nanoTime();
+        mPhaseStartNanos = mFrameStartNanos;
+        mPhase = 0;
+    }
+
+    public void endPhase() {
+        long nowNanos = System.nanoTime();
+        if (mPhase < mPhaseHistograms.length) {
+            mPhaseHistograms[mPhase++].record(nowNanos - mPhaseStartNanos);
+        }
+        mPhaseStartNanos = nowNanos;
+    }
+
+    public void endFrame() {
+        mLastFrameNanos = System.nanoTime() - mFrameStartNanos;
+        mFrameHistogram.record(mLastFrameNanos);
+    }
+
+    /**
+     * Returns how long the last ended frame took.
+     */
+    public long getLastFrameNanos() {
+        return mLastFrameNanos;
+    }
+
+    /**
+     * Records a timer tick that was scheduled for {@code scheduledMs} and ran at
+     * {@code actualMs}, both wall clock. A tick that lands in a later second than the one it was
+     * scheduled for means the face skipped showing at least one second.
+     */
+    public void recordTick(long scheduledMs, long actualMs) {
+        mTickCount++;
+        mMissedSecondCount += Math.max(0, actualMs / SECOND_MS - scheduledMs / SECOND_MS);
+        mMaxTickLatenessMs = Math.max(mMaxTickLatenessMs, actualMs - scheduledMs);
+    }
+
+    public LatencyHistogram getFrameHistogram() {
+        return mFrameHistogram;
+    }
+
+    public LatencyHistogram getPhaseHistogram(int phase) {
+        return mPhaseHistograms[phase];
+    }
+
+    public long getTickCount() {
+        return mTickCount;
+    }
+
+    public long getMissedSecondCount() {
+        return mMissedSecondCount;
+    }
+
+    public void reset() {
+        mFrameHistogram.reset();
+        for (LatencyHistogram histogram : mPhaseHistograms) {
+            histogram.reset();
+        }
+        mTickCount = 0;
+        mMissedSecondCount = 0;
+        mMaxTickLatenessMs = 0;
+    }
+
+    public void dump(String prefix, PrintWriter out) {
+        out.print(prefix);
+        out.println("frame:");
+        mFrameHistogram.dump(prefix + "  ", out);
+        for (int i = 0; i < mPhaseNames.length; i++) {
+            out.print(prefix);
+            out.println(mPhaseNames[i] + ":");
+            mPhaseHistograms[i].dump(prefix + "  ", out);
+        }
+        out.print(prefix);
+        out.println("ticks=" + mTickCount + " missedSeconds=" + mMissedSecondCount
+                + " maxLateness=" + mMaxTickLatenessMs + "ms");
+    }
+}
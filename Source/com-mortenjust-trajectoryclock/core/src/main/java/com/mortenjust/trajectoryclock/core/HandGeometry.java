@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mortenjust.trajectoryclock.core;
+
+/**
+ * Screen coordinates of the hand endpoints for every position a ticking hand can take: 720 for
+ * the hour hand (one per minute of the half day) and 60 each for the minute and second hands.
+ * The tables are filled once per surface size, so drawing a hand is a table lookup and a
+ * {@code drawLine} instead of rotating the canvas.
+ */
+public final class HandGeometry {
+
+    public static final int HOUR_POSITIONS = 12 * 60;
+    public static final int MINUTE_POSITIONS = 60;
+
+    /* Unit vectors pointing from the center to each position, with y growing downwards. */
+    private static final float[] HOUR_DX = new float[HOUR_POSITIONS];
+    private static final float[] HOUR_DY = new float[HOUR_POSITIONS];
+    private static final float[] MINUTE_DX = new float[MINUTE_POSITIONS];
+    private static final float[] MINUTE_DY = new float[MINUTE_POSITIONS];
+
+    static {
+        fillUnitVectors(HOUR_DX, HOUR_DY);
+        fillUnitVectors(MINUTE_DX, MINUTE_DY);
+    }
+
+    private final float[] mHourX = new float[HOUR_POSITIONS];
+    private final float[] mHourY = new float[HOUR_POSITIONS];
+    private final float[] mMinuteX = new float[MINUTE_POSITIONS];
+    private final float[] mMinuteY = new float[MINUTE_POSITIONS];
+    private final float[] mSecondStartX = new float[MINUTE_POSITIONS];
+    private final float[] mSecondStartY = new float[MINUTE_POSITIONS];
+    private final float[] mSecondEndX = new float[MINUTE_POSITIONS];
+    private final float[] mSecondEndY = new float[MINUTE_POSITIONS];
+
+    private float mCenterX;
+    private float mCenterY;
+
+    private static void fillUnitVectors(float[] dx, float[] dy) {
+        for (int i = 0; i < dx.length; i++) {
+            double radians = 2 * Math.PI * i / dx.length;
+            dx[i] = (float) Math.sin(radians);
+            dy[i] = (float) -Math.cos(radians);
+        }
+    }
+
+    /**
+     * Fills the tables for a surface. Hand lengths are measured from the center to the end
+     * points; the second hand starts {@code secondHandStart} out from the center.
+     */
+    public void setUp(float centerX, float centerY, float hourHandLength,
+            float minuteHandLength, float secondHandStart, float secondHandLength) {
+        mCenterX = centerX;
+        mCenterY = centerY;
+        for (int i = 0; i < HOUR_POSITIONS; i++) {
+            mHourX[i] = centerX + HOUR_DX[i] * hourHandLength;
+            mHourY[i] = centerY + HOUR_DY[i] * hourHandLength;
+        }
+        for (int i = 0; i < MINUTE_POSITIONS; i++) {
+            mMinuteX[i] = centerX + MINUTE_DX[i] * minuteHandLength;
+            mMinuteY[i] = centerY + MINUTE_DY[i] * minuteHandLength;
+            mSecondStartX[i] = centerX + MINUTE_DX[i] * secondHandStart;
+            mSecondStartY[i] = centerY + MINUTE_DY[i] * secondHandStart;
+            mSecondEndX[i] = centerX + MINUTE_DX[i] * secondHandLength;
+            mSecondEndY[i] = centerY + MINUTE_DY[i] * secondHandLength;
+        }
+    }
+
+    /**
+     * Returns the hour table index for the rotations; it matches
+     * {@link HandRotations#hoursRotation}, which moves half a degree a minute.
+     */
+    public static int hourIndex(HandRotations r) {
+        return (r.hour % 12) * 60 + r.minute;
+    }
+
+    public float getCenterX() {
+        return mCenterX;
+    }
+
+    public float getCenterY() {
+        return mCenterY;
+    }
+
+    public float getHourX(int hourIndex) {
+        return mHourX[hourIndex];
+    }
+
+    public float getHourY(int hourIndex) {
+        return mHourY[hourIndex];
+    }
+
+    public float getMinuteX(int minute) {
+        return mMinuteX[minute];
+    }
+
+    public float getMinuteY(int minute) {
+        return mMinuteY[minute];
+    }
+
+    public float getSecondStartX(int second) {
+        return mSecondStartX[second];
+    }
+
+    public float getSecondStartY(int second) {
+        return mSecondStartY[second];
+    }
+
+    public float getSecondEndX(int second) {
+        return mSecondEndX[second];
+    }
+
+    public float getSecondEndY(int second) {
+        return mSecondEndY[second];
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mortenjust.trajectoryclock.core;
+
+/**
+ * Hand angles in degrees clockwise from 12 o'clock for one wall-clock time, plus the time of day
+ * they were computed from. Instances are meant to be allocated once and refilled every frame.
+ */
+public final class HandRotations {
+
+    private static final long MS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+    public float secondsRotation;
+    /* The second hand of a sweeping face, which moves continuously between the ticks. */
+    public float sweepSecondsRotation;
+    public float minutesRotation;
+    public float hoursRotation;
+    /* The offset of the hour hand due to minutes of the hour. */
+    public float hourHandOffset;
+
+    /* Hour of the day (0-23), minute, second and millisecond the rotations were computed from. */
+    public int hour;
+    public int minute;
+    public int second;
+    public int millis;
+
+    /**
+     * Sets the rotations for a local time, i.e. epoch milliseconds with the zone offset already
+     * added.
+     */
+    public void setLocalTime(long localMs) {
+        long msOfDay = localMs % MS_PER_DAY;
+        if (msOfDay < 0) {
+            msOfDay += MS_PER_DAY;
+        }
+        int secondOfDay = (int) (msOfDay / 1000);
+        hour = secondOfDay / 3600;
+        minute = (secondOfDay / 60) % 60;
+        second = secondOfDay % 60;
+        millis = (int) (msOfDay % 1000);
+
+        /*
+         * These calculations reflect the rotation in degrees per unit of
+         * time, e.g. 360 / 60 = 6 and 360 / 12 = 30
+         */
+        secondsRotation = second * 6f;
+        sweepSecondsRotation = secondsRotation + millis * 0.006f;
+        minutesRotation = minute * 6f;
+        hourHandOffset = minute / 2f;
+        hoursRotation = ((hour % 12) * 30) + hourHandOffset;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mortenjust.trajectoryclock.core;
+
+import java.io.PrintWriter;
+
+/**
+ * Fixed-size histogram of durations with power-of-two microsecond buckets. Bucket {@code i}
+ * holds durations of {@code [2^(i-1), 2^i)} microseconds, and bucket 0 holds those under a
+ * microsecond. Recording is a few arithmetic operations and never allocates, so it is safe to
+ * call from {@code onDraw}.
+ */
+public final class LatencyHistogram {
+
+    /* 2^31 us is more than half an hour; anything longer lands in the last bucket. */
+    private static final int BUCKET_COUNT = 32;
+
+    private final long[] mBuckets = new long[BUCKET_COUNT];
+    private long mCount;
+    private long mTotalNanos;
+    private long mMaxNanos;
+
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos) / 1000;
+        int bucket = Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros));
+        mBuckets[bucket]++;
+        mCount++;
+        mTotalNanos += nanos;
+        mMaxNanos = Math.max(mMaxNanos, nanos);
+    }
+
+    public long getCount() {
+        return mCount;
+    }
+
+    public long getBucketCount(int bucket) {
+        return mBuckets[bucket];
+    }
+
+    public long getMeanNanos() {
+        return mCount == 0 ? 0 : mTotalNanos / mCount;
+    }
+
+    public long getMaxNanos() {
+        return mMaxNanos;
+    }
+
+    /**
+     * Returns an upper bound in microseconds for the given percentile (0-100), i.e. the upper
+     * edge of the bucket it falls in.
+     */
+    public long getPercentileMicros(double percentile) {
+        if (mCount == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(mCount * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += mBuckets[i];
+            if (seen >= rank) {
+                return upperBoundMicros(i);
+            }
+        }
+        return upperBoundMicros(BUCKET_COUNT - 1);
+    }
+
+    private static long upperBoundMicros(int bucket) {
+        return 1L << bucket;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mBuckets[i] = 0;
+        }
+        mCount = 0;
+        mTotalNanos = 0;
+        mMaxNanos = 0;
+    }
+
+    /**
+     * Prints a summary line followed by one line per non-empty bucket.
+     */
+    public void dump(String prefix, PrintWriter out) {
+        out.print(prefix);
+        out.print("count=" + mCount + " mean=" + (getMeanNanos() / 1000) + "us");
+        out.print(" p50<" + getPercentileMicros(50) + "us p90<" + getPercentileMicros(90)
+                + "us p99<" + getPercentileMicros(99) + "us");
+        out.println(" max=" + (mMaxNanos / 1000) + "us");
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (mBuckets[i] != 0) {
+                out.print(prefix);
+                out.println("  <" + upperBoundMicros(i) + "us: " + mBuckets[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mortenjust.trajectoryclock.core;
+
+/**
+ * Where to shift ambient content each minute on screens with burn-in protection, so no pixel
+ * stays lit for long. The offsets walk a square spiral out from the center to
+ * {@code maxShiftPx} in each direction and then back in, so consecutive minutes are at most one
+ * pixel apart and every offset in the square gets its turn.
+ */
+public final class PixelShiftSchedule {
+
+    private final int[] mDx;
+    private final int[] mDy;
+    /* Length of one walk out and back in; the ends of the spiral aren't repeated. */
+    private final int mPeriod;
+
+    public PixelShiftSchedule(int maxShiftPx) {
+        int side = 2 * maxShiftPx + 1;
+        int count = side * side;
+        mDx = new int[count];
+        mDy = new int[count];
+        mPeriod = Math.max(1, 2 * count - 2);
+
+        int x = 0;
+        int y = 0;
+        int i = 0;
+        // Right 1, down 1, left 2, up 2, right 3, ... until every offset in the square is hit.
+        int[][] directions = {{1, 0}, {0, 1}, {-1, 0}, {0, -1}};
+        int direction = 0;
+        int runLength = 1;
+        while (i < count) {
+            for (int turn = 0; turn < 2 && i < count; turn++) {
+                for (int step = 0; step < runLength && i < count; step++) {
+                    if (Math.abs(x) <= maxShiftPx && Math.abs(y) <= maxShiftPx) {
+                        mDx[i] = x;
+                        mDy[i] = y;
+                        i++;
+                    }
+                    x += directions[direction][0];
+                    y += directions[direction][1];
+                }
+                direction = (direction + 1) % directions.length;
+            }
+            runLength++;
+        }
+    }
+
+    public int getShiftX(long epochMinute) {
+        return mDx[index(epochMinute)];
+    }
+
+    public int getShiftY(long epochMinute) {
+        return mDy[index(epochMinute)];
+    }
+
+    /**
+     * Returns the number of distinct offsets in the schedule.
+     */
+    public int size() {
+        return mDx.length;
+    }
+
+    private int index(long epochMinute) {
+        int phase = (int) (((epochMinute % mPeriod) + mPeriod) % mPeriod);
+        return phase < mDx.length ? phase : mPeriod - phase;
+    }
+}
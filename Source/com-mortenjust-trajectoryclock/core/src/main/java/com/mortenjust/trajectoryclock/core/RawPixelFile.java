@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mortenjust.trajectoryclock.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A file holding a raw pixel buffer behind a small header, so a prepared bitmap can be saved
+ * once and later mapped into memory and copied straight into a new bitmap, without decoding.
+ * The header records the size and format of the pixels, whether they have alpha and a stamp
+ * chosen by the writer, such as the time the app was last updated; a file with another stamp is
+ * treated as missing.
+ */
+public final class RawPixelFile {
+
+    /**
+     * Copies pixels into the buffer it is given, such as {@code Bitmap.copyPixelsToBuffer}.
+     */
+    public interface PixelSource {
+        void copyTo(ByteBuffer buffer);
+    }
+
+    /* "TCPX" */
+    private static final int MAGIC = 0x54435058;
+    private static final int FORMAT_VERSION = 2;
+
+    /* Magic, version, stamp, width, height, format, alpha flag and pixel byte count. */
+    static final int HEADER_BYTES = 4 + 4 + 8 + 4 + 4 + 4 + 4 + 4;
+
+    private final int mWidth;
+    private final int mHeight;
+    private final int mFormat;
+    private final boolean mHasAlpha;
+    private final ByteBuffer mPixels;
+
+    private RawPixelFile(int width, int height, int format, boolean hasAlpha, ByteBuffer pixels) {
+        mWidth = width;
+        mHeight = height;
+        mFormat = format;
+        mHasAlpha = hasAlpha;
+        mPixels = pixels;
+    }
+
+    /**
+     * Writes the remaining bytes of {@code pixels} to {@code file}, as
+     * {@link #write(File, long, int, int, int, boolean, int, PixelSource)} does.
+     */
+    public static void write(File file, long stamp, int width, int height, int format,
+            boolean hasAlpha, ByteBuffer pixels) throws IOException {
+        final ByteBuffer body = pixels.duplicate();
+        write(file, stamp, width, height, format, hasAlpha, body.remaining(),
+                new PixelSource() {
+                    @Override
+                    public void copyTo(ByteBuffer buffer) {
+                        buffer.put(body);
+                    }
+                });
+    }
+
+    /**
+     * Writes {@code byteCount} bytes of pixels from {@code source} to {@code file}. The source
+     * copies them straight into the file mapped into memory, so the pixels don't need a buffer of
+     * their own. The file is written under a temporary name and renamed into place, so readers
+     * never see half of it.
+     *
+     * @param format what the pixels are, in terms the caller defines
+     * @throws IOException if the file can't be written or {@code source} copies another number
+     *     of bytes
+     */
+    public static void write(File file, long stamp, int width, int height, int format,
+            boolean hasAlpha, int byteCount, PixelSource source) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(stamp).putInt(width).putInt(height)
+                .putInt(format).putInt(hasAlpha ? 1 : 0).putInt(byteCount);
+        header.flip();
+
+        File tmp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        boolean renamed = false;
+        try {
+            RandomAccessFile out = new RandomAccessFile(tmp, "rw");
+            try {
+                FileChannel channel = out.getChannel();
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+                // Mapping the rest grows the file to its full size.
+                ByteBuffer body = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES,
+                        byteCount);
+                source.copyTo(body);
+                if (body.position() != byteCount) {
+                    throw new IOException("Got " + body.position() + " of " + byteCount
+                            + " pixel bytes");
+                }
+            } finally {
+                out.close();
+            }
+            renamed = tmp.renameTo(file);
+            if (!renamed) {
+                throw new IOException("Couldn't rename " + tmp + " to " + file);
+            }
+        } finally {
+            if (!renamed) {
+                tmp.delete();
+            }
+        }
+    }
+
+    /**
+     * Maps the pixels of {@code file} into memory. Returns null if there is no such file, or it
+     * has another stamp or isn't a complete pixel file.
+     */
+    public static RawPixelFile map(File file, long stamp) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                return null;
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    return null;
+                }
+            }
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION
+                    || header.getLong() != stamp) {
+                return null;
+            }
+            int width = header.getInt();
+            int height = header.getInt();
+            int format = header.getInt();
+            boolean hasAlpha = header.getInt() != 0;
+            int byteCount = header.getInt();
+            if (size != HEADER_BYTES + (long) byteCount) {
+                return null;
+            }
+            // The mapping stays valid after the file is closed.
+            ByteBuffer pixels = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES,
+                    byteCount);
+            return new RawPixelFile(width, height, format, hasAlpha, pixels);
+        } finally {
+            in.close();
+        }
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public int getFormat() {
+        return mFormat;
+    }
+
+    public boolean hasAlpha() {
+        return mHasAlpha;
+    }
+
+    /**
+     * Returns the mapped pixels, positioned at the first one.
+     */
+    public ByteBuffer getPixels() {
+        return mPixels;
+    }
+}
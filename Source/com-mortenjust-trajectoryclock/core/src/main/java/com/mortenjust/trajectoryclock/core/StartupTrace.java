@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mortenjust.trajectoryclock.core;
+
+import java.io.PrintWriter;
+
+/**
+ * The phases of a face's startup, from the engine being created to its first frame. Phases are
+ * timed spans on the UI thread, such as setting up paints or drawing the first frame; milestones
+ * mark when something finished elsewhere, such as a background decoded on a worker thread. The
+ * trace ends with the first frame, after which everything is ignored, so the calls can stay in
+ * code that runs again later.
+ */
+public final class StartupTrace {
+
+    private static final int MAX_ENTRIES = 32;
+
+    private final long mStartNanos;
+    private final String[] mNames = new String[MAX_ENTRIES];
+    private final long[] mBeginNanos = new long[MAX_ENTRIES];
+    private final long[] mEndNanos = new long[MAX_ENTRIES];
+    private final boolean[] mMilestone = new boolean[MAX_ENTRIES];
+    private int mCount;
+    private int mOpenPhase = -1;
+    private long mFinishNanos;
+    private boolean mFinished;
+
+    public StartupTrace(long startNanos) {
+        mStartNanos = startNanos;
+    }
+
+    /**
+     * Starts a phase, ending the one in progress, if any.
+     */
+    public void beginPhase(String name, long nowNanos) {
+        if (mFinished) {
+            return;
+        }
+        endPhase(nowNanos);
+        int entry = add(name, nowNanos, false);
+        mOpenPhase = entry;
+    }
+
+    public void endPhase(long nowNanos) {
+        if (mOpenPhase < 0) {
+            return;
+        }
+        mEndNanos[mOpenPhase] = nowNanos;
+        mOpenPhase = -1;
+    }
+
+    public boolean hasOpenPhase() {
+        return mOpenPhase >= 0;
+    }
+
+    public void milestone(String name, long nowNanos) {
+        if (mFinished) {
+            return;
+        }
+        add(name, nowNanos, true);
+    }
+
+    /**
+     * Ends the trace when the first frame has been drawn, ending the phase in progress too.
+     */
+    public void finish(long nowNanos) {
+        if (mFinished) {
+            return;
+        }
+        endPhase(nowNanos);
+        mFinishNanos = nowNanos;
+        mFinished = true;
+    }
+
+    public boolean isFinished() {
+        return mFinished;
+    }
+
+    /**
+     * Returns the time from the start to the first frame, or -1 if there hasn't been one.
+     */
+    public long getTotalNanos() {
+        return mFinished ? mFinishNanos - mStartNanos : -1;
+    }
+
+    /**
+     * Returns the time spent in phases, leaving out the waits between them.
+     */
+    public long getPhaseNanos() {
+        long nanos = 0;
+        for (int i = 0; i < mCount; i++) {
+            if (!mMilestone[i] && i != mOpenPhase) {
+                nanos += mEndNanos[i] - mBeginNanos[i];
+            }
+        }
+        return nanos;
+    }
+
+    public int getEntryCount() {
+        return mCount;
+    }
+
+    public String getEntryName(int i) {
+        return mNames[i];
+    }
+
+    /**
+     * Returns how long phase {@code i} took, or 0 for a milestone.
+     */
+    public long getEntryNanos(int i) {
+        return mMilestone[i] || i == mOpenPhase ? 0 : mEndNanos[i] - mBeginNanos[i];
+    }
+
+    /**
+     * Returns when phase {@code i} started, or milestone {@code i} happened, after the start.
+     */
+    public long getEntryOffsetNanos(int i) {
+        return mBeginNanos[i] - mStartNanos;
+    }
+
+    public boolean isMilestone(int i) {
+        return mMilestone[i];
+    }
+
+    private int add(String name, long nowNanos, boolean milestone) {
+        // Later entries of a long trace overwrite the last one rather than growing.
+        int entry = Math.min(mCount, MAX_ENTRIES - 1);
+        mNames[entry] = name;
+        mBeginNanos[entry] = nowNanos;
+        mEndNanos[entry] = nowNanos;
+        mMilestone[entry] = milestone;
+        mCount = entry + 1;
+        return entry;
+    }
+
+    /**
+     * Prints the total, then one line per entry in order: phases with their start and
+     * duration, milestones with when they happened.
+     */
+    public void dump(String prefix, PrintWriter out) {
+        out.print(prefix);
+        out.println("startup total=" + (mFinished ? (getTotalNanos() / 1000) + "us" : "unfinished")
+                + " inPhases=" + getPhaseNanos() / 1000 + "us");
+        for (int i = 0; i < mCount; i++) {
+            out.print(prefix);
+            out.print("  @" + getEntryOffsetNanos(i) / 1000 + "us " + mNames[i]);
+            out.println(mMilestone[i] ? "" : " " + getEntryNanos(i) / 1000 + "us");
+        }
+    }
+}
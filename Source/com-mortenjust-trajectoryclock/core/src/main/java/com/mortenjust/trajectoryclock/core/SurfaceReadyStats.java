@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mortenjust.trajectoryclock.core;
+
+import java.io.PrintWriter;
+
+/**
+ * How long a face takes to show something after its surface changes, and how long until that
+ * something is the full face rather than a placeholder drawn while its assets are still being
+ * prepared. Both are measured from {@link #onSurfaceChanged}; a surface change that is followed
+ * by another before its first full frame is only measured from the later one.
+ */
+public final class SurfaceReadyStats {
+
+    private static final long NONE = Long.MIN_VALUE;
+
+    private final LatencyHistogram mFirstFrame = new LatencyHistogram();
+    private final LatencyHistogram mFirstFullFrame = new LatencyHistogram();
+
+    private long mSurfaceChangedNanos = NONE;
+    private boolean mDrewFirstFrame;
+    private long mPlaceholderFrameCount;
+
+    public void onSurfaceChanged(long nowNanos) {
+        mSurfaceChangedNanos = nowNanos;
+        mDrewFirstFrame = false;
+    }
+
+    /**
+     * Records a frame that finished at {@code nowNanos}; {@code full} is false if it was drawn
+     * with a placeholder for assets that aren't ready yet.
+     */
+    public void onFrame(long nowNanos, boolean full) {
+        if (!full) {
+            mPlaceholderFrameCount++;
+        }
+        if (mSurfaceChangedNanos == NONE) {
+            return;
+        }
+        if (!mDrewFirstFrame) {
+            mDrewFirstFrame = true;
+            mFirstFrame.record(nowNanos - mSurfaceChangedNanos);
+        }
+        if (full) {
+            mFirstFullFrame.record(nowNanos - mSurfaceChangedNanos);
+            mSurfaceChangedNanos = NONE;
+        }
+    }
+
+    public LatencyHistogram getFirstFrameHistogram() {
+        return mFirstFrame;
+    }
+
+    public LatencyHistogram getFirstFullFrameHistogram() {
+        return mFirstFullFrame;
+    }
+
+    public long getPlaceholderFrameCount() {
+        return mPlaceholderFrameCount;
+    }
+
+    public void dump(String prefix, PrintWriter out) {
+        out.print(prefix);
+        out.println("surface changed to first frame:");
+        mFirstFrame.dump(prefix + "  ", out);
+        out.print(prefix);
+        out.println("surface changed to first full frame (placeholderFrames="
+                + mPlaceholderFrameCount + "):");
+        mFirstFullFrame.dump(prefix + "  ", out);
+    }
+}
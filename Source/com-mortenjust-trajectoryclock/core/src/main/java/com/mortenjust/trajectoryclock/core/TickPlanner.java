@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mortenjust.trajectoryclock.core;
+
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The arithmetic behind a once-a-second wakeup aligned to the wall-clock second. It works out
+ * how long to wait for the next second and decides, on each wakeup, whether the second has
+ * turned yet:
+ *
+ * <pre>
+ * handler.postDelayed(tick, planner.scheduleNext(nowMs));
+ * // When the runnable runs:
+ * long latenessMs = planner.onWakeUp(nowMs);
+ * if (latenessMs < 0) {
+ *     handler.postDelayed(tick, -latenessMs);
+ * } else {
+ *     dispatchTick(planner.getScheduledMs(), nowMs);
+ *     handler.postDelayed(tick, planner.scheduleNext(nowMs));
+ * }
+ * </pre>
+ *
+ * A delayed wakeup is always a little late, and its delay is in uptime, which drifts from the
+ * wall clock. The planner keeps a running mean of how late the wakeups run before correction
+ * and asks for the next one that much earlier, aiming at {@link #TARGET_LATENESS_MS} after the
+ * second turns. The correction is capped at {@link #MAX_CORRECTION_MS} so a single stall can't
+ * unhinge the schedule. A wakeup that still comes before the second is not a tick; the caller
+ * waits out the rest of it uncorrected. A wakeup more than a second early means the wall clock
+ * was set back, and the planner targets the next second from the new time instead, so the wait
+ * is never longer than a tick.
+ *
+ * <p>Nothing here allocates after construction.
+ */
+public final class TickPlanner {
+
+    public static final long TICK_MS = TimeUnit.SECONDS.toMillis(1);
+
+    /** How late after the turn of the second the wakeups aim to be. */
+    public static final long TARGET_LATENESS_MS = 2;
+    /** The most a wakeup is moved earlier. */
+    public static final long MAX_CORRECTION_MS = 50;
+    /* Weight of the newest wakeup in the running mean lateness, as 1 / n. */
+    private static final int LATENESS_WEIGHT = 8;
+
+    private long mScheduledMs;
+    private long mCorrectionMs;
+    /* How late a delayed wakeup runs, before any correction. */
+    private float mMeanWakeUpLatenessMs = TARGET_LATENESS_MS;
+
+    private final LatencyHistogram mLatenessHistogram = new LatencyHistogram();
+    private long mWakeUpCount;
+    private long mTickCount;
+    private long mEarlyWakeUpCount;
+    private long mMissedSecondCount;
+    private long mClockSetBackCount;
+
+    /**
+     * Targets the first turn of the second after {@code nowMs} and returns how long to wait
+     * for it, already corrected for the usual lateness.
+     */
+    public long scheduleNext(long nowMs) {
+        mScheduledMs = nowMs - (nowMs % TICK_MS) + TICK_MS;
+        long delayMs = mScheduledMs - nowMs;
+        mCorrectionMs = Math.max(0, Math.min(Math.min(MAX_CORRECTION_MS, delayMs),
+                Math.round(mMeanWakeUpLatenessMs) - TARGET_LATENESS_MS));
+        return delayMs - mCorrectionMs;
+    }
+
+    /**
+     * Records a wakeup at {@code nowMs} and returns how late it is for the scheduled second. A
+     * negative result means the second hasn't turned; wait that many milliseconds more, at most
+     * {@link #TICK_MS}, without calling {@link #scheduleNext}. Otherwise the wakeup is a tick.
+     */
+    public long onWakeUp(long nowMs) {
+        mWakeUpCount++;
+        long latenessMs = nowMs - mScheduledMs;
+        if (latenessMs < -TICK_MS) {
+            // The wall clock went back. Aim at its next second, and keep a wait that says
+            // nothing about the handler out of the mean.
+            mClockSetBackCount++;
+            mScheduledMs = nowMs - (nowMs % TICK_MS) + TICK_MS;
+            mCorrectionMs = 0;
+            return nowMs - mScheduledMs;
+        }
+        mMeanWakeUpLatenessMs += (latenessMs + mCorrectionMs - mMeanWakeUpLatenessMs)
+                / LATENESS_WEIGHT;
+
+        if (latenessMs < 0) {
+            mEarlyWakeUpCount++;
+            mCorrectionMs = 0;
+            return latenessMs;
+        }
+
+        mTickCount++;
+        mLatenessHistogram.record(TimeUnit.MILLISECONDS.toNanos(latenessMs));
+        mMissedSecondCount += nowMs / TICK_MS - mScheduledMs / TICK_MS;
+        return latenessMs;
+    }
+
+    /**
+     * Returns the wall-clock time of the second the pending wakeup is for.
+     */
+    public long getScheduledMs() {
+        return mScheduledMs;
+    }
+
+    /**
+     * Returns how much earlier than the turn of the second the pending wakeup was asked for.
+     */
+    public long getCorrectionMs() {
+        return mCorrectionMs;
+    }
+
+    public float getMeanWakeUpLatenessMs() {
+        return mMeanWakeUpLatenessMs;
+    }
+
+    public LatencyHistogram getLatenessHistogram() {
+        return mLatenessHistogram;
+    }
+
+    public long getWakeUpCount() {
+        return mWakeUpCount;
+    }
+
+    public long getTickCount() {
+        return mTickCount;
+    }
+
+    public long getEarlyWakeUpCount() {
+        return mEarlyWakeUpCount;
+    }
+
+    public long getMissedSecondCount() {
+        return mMissedSecondCount;
+    }
+
+    public long getClockSetBackCount() {
+        return mClockSetBackCount;
+    }
+
+    public void dump(String prefix, PrintWriter out) {
+        out.print(prefix);
+        out.println("wakeUps=" + mWakeUpCount + " ticks=" + mTickCount
+                + " earlyWakeUps=" + mEarlyWakeUpCount + " missedSeconds=" + mMissedSecondCount
+                + " clockSetBacks=" + mClockSetBackCount
+                + " wakeUpLateness=" + mMeanWakeUpLatenessMs + "ms correction="
+                + mCorrectionMs + "ms");
+        out.print(prefix);
+        out.println("lateness:");
+        mLatenessHistogram.dump(prefix + "  ", out);
+    }
+}
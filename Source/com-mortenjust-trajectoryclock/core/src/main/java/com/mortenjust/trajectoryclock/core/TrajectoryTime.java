@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mortenjust.trajectoryclock.core;
+
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hand rotations for the current time and for the trajectory time, i.e. now plus the ETA. Both
+ * are derived from one epoch-millisecond value with plain arithmetic, so {@link #update} neither
+ * allocates nor depends on Android, and can be benchmarked and tested on the host.
+ */
+public final class TrajectoryTime {
+
+    private final HandRotations mCurrentRotations = new HandRotations();
+    private final HandRotations mShiftedRotations = new HandRotations();
+
+    private long mNowMs;
+    private long mShiftedMs;
+    private long mEtaOffsetMs;
+
+    public TrajectoryTime(int etaMinutes) {
+        setEtaMinutes(etaMinutes);
+    }
+
+    public void setEtaMinutes(int etaMinutes) {
+        setEtaOffsetMs(TimeUnit.MINUTES.toMillis(etaMinutes));
+    }
+
+    /**
+     * Sets the ETA used from the next {@link #update} on.
+     */
+    public void setEtaOffsetMs(long etaOffsetMs) {
+        mEtaOffsetMs = etaOffsetMs;
+    }
+
+    public long getEtaOffsetMs() {
+        return mEtaOffsetMs;
+    }
+
+    /**
+     * Moves both times to {@code nowMs}. The offsets are looked up separately for now and for
+     * the trajectory time so the trajectory hands are right across a daylight saving change.
+     */
+    public void update(long nowMs, TimeZone timeZone) {
+        update(nowMs, timeZone.getOffset(nowMs), timeZone.getOffset(nowMs + mEtaOffsetMs));
+    }
+
+    public void update(long nowMs, int zoneOffsetMs) {
+        update(nowMs, zoneOffsetMs, zoneOffsetMs);
+    }
+
+    public void update(long nowMs, int zoneOffsetMs, int shiftedZoneOffsetMs) {
+        mNowMs = nowMs;
+        mShiftedMs = nowMs + mEtaOffsetMs;
+        mCurrentRotations.setLocalTime(nowMs + zoneOffsetMs);
+        mShiftedRotations.setLocalTime(nowMs + mEtaOffsetMs + shiftedZoneOffsetMs);
+    }
+
+    public HandRotations getCurrentRotations() {
+        return mCurrentRotations;
+    }
+
+    public HandRotations getShiftedRotations() {
+        return mShiftedRotations;
+    }
+
+    public long getNowMs() {
+        return mNowMs;
+    }
+
+    /**
+     * Minutes since the epoch for the last update; changes exactly when the current hour and
+     * minute hands can move.
+     */
+    public long getEpochMinute() {
+        return mNowMs / TimeUnit.MINUTES.toMillis(1);
+    }
+
+    /**
+     * Minutes since the epoch of the trajectory time for the last update. Unless the ETA is
+     * whole minutes, it turns at a different second than {@link #getEpochMinute}.
+     */
+    public long getShiftedEpochMinute() {
+        return mShiftedMs / TimeUnit.MINUTES.toMillis(1);
+    }
+
+    /**
+     * Changes exactly when the hour and minute hands of either set can move, while the ETA stays
+     * the same; key anything drawn once a minute on this and the ETA.
+     */
+    public long getMinuteKey() {
+        // Both minutes only move forward with the time, so their sum changes when either does.
+        return getEpochMinute() + getShiftedEpochMinute();
+    }
+}
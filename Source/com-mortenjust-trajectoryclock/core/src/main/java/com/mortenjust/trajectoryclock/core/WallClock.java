@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mortenjust.trajectoryclock.core;
+
+/**
+ * The time the watch faces draw. It is the system clock, except in tests and benchmarks, which
+ * can pin it to simulate any time of day without waiting for it.
+ */
+public final class WallClock {
+
+    private static final long SYSTEM_TIME = Long.MIN_VALUE;
+
+    private static volatile long sFixedTimeMs = SYSTEM_TIME;
+
+    private WallClock() {
+    }
+
+    public static long currentTimeMillis() {
+        long fixedTimeMs = sFixedTimeMs;
+        return fixedTimeMs == SYSTEM_TIME ? System.currentTimeMillis() : fixedTimeMs;
+    }
+
+    public static void setFixedTimeMillis(long timeMs) {
+        sFixedTimeMs = timeMs;
+    }
+
+    public static void useSystemTime() {
+        sFixedTimeMs = SYSTEM_TIME;
+    }
+}
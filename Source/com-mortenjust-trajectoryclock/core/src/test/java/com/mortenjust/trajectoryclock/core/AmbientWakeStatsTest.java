@@ -0,0 +1,41 @@
+package com.mortenjust.trajectoryclock.core;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class AmbientWakeStatsTest {
+
+    @Test
+    public void sumsTheFramesOfEachMinute() {
+        AmbientWakeStats stats = new AmbientWakeStats();
+
+        // A time tick and two peek card moves in the first minute, one time tick in the next.
+        stats.recordFrame(100, TimeUnit.MILLISECONDS.toNanos(3));
+        stats.recordFrame(100, TimeUnit.MILLISECONDS.toNanos(2));
+        stats.recordFrame(100, TimeUnit.MILLISECONDS.toNanos(2));
+        stats.recordFrame(101, TimeUnit.MILLISECONDS.toNanos(1));
+        assertEquals(1, stats.getAwakePerMinuteHistogram().getCount());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(7),
+                stats.getAwakePerMinuteHistogram().getMaxNanos());
+
+        stats.endMinute();
+        assertEquals(2, stats.getAwakePerMinuteHistogram().getCount());
+        assertEquals(4, stats.getFrameCount());
+        assertEquals(3, stats.getMaxFramesPerMinute());
+    }
+
+    @Test
+    public void endingWithoutFramesRecordsNothing() {
+        AmbientWakeStats stats = new AmbientWakeStats();
+
+        stats.endMinute();
+        stats.recordFrame(5, 1000);
+        stats.endMinute();
+        stats.endMinute();
+
+        assertEquals(1, stats.getAwakePerMinuteHistogram().getCount());
+    }
+}
@@ -0,0 +1,78 @@
+package com.mortenjust.trajectoryclock.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ColorQuantizerTest {
+
+    private static final int RED = 0xffc81e1e;
+    private static final int SLATE = 0xff323c46;
+
+    @Test
+    public void picksAVibrantAndADarkMutedColor() {
+        int[] pixels = new int[1000];
+        Arrays.fill(pixels, 0, 400, RED);
+        Arrays.fill(pixels, 400, 900, SLATE);
+        // A little noise around the slate, and some white that is skipped.
+        for (int i = 900; i < 950; i++) {
+            pixels[i] = SLATE + (i % 5) * 0x010101;
+        }
+        Arrays.fill(pixels, 950, 1000, 0xffffffff);
+
+        ColorQuantizer quantizer = new ColorQuantizer(16);
+        quantizer.quantize(pixels, 0, pixels.length);
+
+        assertClose(RED, quantizer.getVibrantColor(0));
+        assertClose(SLATE, quantizer.getDarkMutedColor(0));
+    }
+
+    @Test
+    public void fallsBackToTheDefaultsWithoutMatchingSwatches() {
+        int[] pixels = new int[100];
+        Arrays.fill(pixels, 0, 50, 0xff000000);
+        Arrays.fill(pixels, 50, 100, 0xffffffff);
+
+        ColorQuantizer quantizer = new ColorQuantizer(16);
+        quantizer.quantize(pixels, 0, pixels.length);
+
+        assertEquals(0, quantizer.getSwatchCount());
+        assertEquals(1, quantizer.getVibrantColor(1));
+        assertEquals(2, quantizer.getDarkMutedColor(2));
+    }
+
+    @Test
+    public void splitsIntoAtMostMaxColorsSwatchesCoveringEveryPixel() {
+        int[] pixels = new int[64 * 64];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xff000000 | (i % 64) * 4 << 16 | (i / 64) * 4 << 8 | 0x80;
+        }
+
+        ColorQuantizer quantizer = new ColorQuantizer(8);
+        quantizer.quantize(pixels, 0, pixels.length);
+        assertEquals(8, quantizer.getSwatchCount());
+        int population = 0;
+        for (int i = 0; i < quantizer.getSwatchCount(); i++) {
+            population += quantizer.getSwatchPopulation(i);
+        }
+        // Only the pixels the black and white cutoffs skip are missing.
+        assertTrue(population > pixels.length * 9 / 10);
+        assertTrue(population <= pixels.length);
+
+        // Reusing the quantizer starts over.
+        quantizer.quantize(new int[] {RED}, 0, 1);
+        assertEquals(1, quantizer.getSwatchCount());
+        assertEquals(1, quantizer.getSwatchPopulation(0));
+    }
+
+    private static void assertClose(int expected, int actual) {
+        for (int shift = 0; shift <= 16; shift += 8) {
+            int difference = Math.abs(((expected >> shift) & 0xff) - ((actual >> shift) & 0xff));
+            assertTrue(Integer.toHexString(actual) + " isn't close to "
+                    + Integer.toHexString(expected), difference <= 8);
+        }
+    }
+}
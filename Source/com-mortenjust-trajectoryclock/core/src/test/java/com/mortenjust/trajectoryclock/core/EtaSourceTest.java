@@ -0,0 +1,101 @@
+package com.mortenjust.trajectoryclock.core;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EtaSourceTest {
+
+    private static final long REFRESH_AFTER_MS = TimeUnit.MINUTES.toMillis(5);
+    private static final long STALE_AFTER_MS = TimeUnit.MINUTES.toMillis(30);
+    private static final long FALLBACK_MS = TimeUnit.MINUTES.toMillis(75);
+
+    private final FakeEtaProvider mProvider = new FakeEtaProvider();
+    private final EtaSource mSource = new EtaSource(mProvider, REFRESH_AFTER_MS, STALE_AFTER_MS,
+            FALLBACK_MS);
+
+    @Test
+    public void drawsTheFallbackUntilTheFirstResultArrives() {
+        mSource.refreshIfDue(0);
+        assertEquals(1, mProvider.getPendingCount());
+        assertEquals(FALLBACK_MS, mSource.getTravelTimeMs(1000));
+
+        mProvider.complete(TimeUnit.MINUTES.toMillis(20));
+        assertEquals(TimeUnit.MINUTES.toMillis(20), mSource.getTravelTimeMs(2000));
+        assertEquals(1, mSource.getFallbackReadCount());
+    }
+
+    @Test
+    public void asksOnceWhileARequestIsInFlight() {
+        mSource.refreshIfDue(0);
+        mSource.refreshIfDue(REFRESH_AFTER_MS);
+        mSource.refreshIfDue(2 * REFRESH_AFTER_MS);
+
+        assertEquals(1, mProvider.getPendingCount());
+        assertTrue(mSource.isRequestInFlight());
+        mProvider.complete(1000);
+        assertFalse(mSource.isRequestInFlight());
+    }
+
+    @Test
+    public void refreshesOnceTheResultIsOld() {
+        mSource.refreshIfDue(0);
+        mProvider.complete(1000);
+
+        mSource.refreshIfDue(REFRESH_AFTER_MS - 1);
+        assertEquals(0, mProvider.getPendingCount());
+        mSource.refreshIfDue(REFRESH_AFTER_MS);
+        assertEquals(1, mProvider.getPendingCount());
+        // The old result is drawn until the new one arrives.
+        assertEquals(1000, mSource.getTravelTimeMs(REFRESH_AFTER_MS));
+        mProvider.complete(2000);
+        assertEquals(2000, mSource.getTravelTimeMs(REFRESH_AFTER_MS));
+        assertEquals(REFRESH_AFTER_MS, mSource.getSnapshot().getRequestTimeMs());
+    }
+
+    @Test
+    public void aStaleResultFallsBack() {
+        mSource.refreshIfDue(0);
+        mProvider.complete(1000);
+
+        assertEquals(1000, mSource.getTravelTimeMs(STALE_AFTER_MS));
+        assertEquals(FALLBACK_MS, mSource.getTravelTimeMs(STALE_AFTER_MS + 1));
+    }
+
+    @Test
+    public void retriesAFailedRequestAfterTheRefreshInterval() {
+        mSource.refreshIfDue(0);
+        mProvider.fail();
+        assertFalse(mSource.isRequestInFlight());
+
+        mSource.refreshIfDue(1000);
+        assertEquals(0, mProvider.getPendingCount());
+        mSource.refreshIfDue(REFRESH_AFTER_MS);
+        assertEquals(1, mProvider.getPendingCount());
+        assertEquals(2, mSource.getRequestCount());
+    }
+
+    @Test
+    public void aClockSetBackAsksAgain() {
+        mSource.refreshIfDue(TimeUnit.HOURS.toMillis(1));
+        mProvider.complete(1000);
+
+        mSource.refreshIfDue(0);
+        assertEquals(1, mProvider.getPendingCount());
+    }
+
+    @Test
+    public void aProviderMayAnswerBeforeReturning() {
+        EtaSource source = new EtaSource(new FixedEtaProvider(1234), REFRESH_AFTER_MS,
+                STALE_AFTER_MS, FALLBACK_MS);
+
+        source.refreshIfDue(0);
+
+        assertFalse(source.isRequestInFlight());
+        assertEquals(1234, source.getTravelTimeMs(0));
+    }
+}
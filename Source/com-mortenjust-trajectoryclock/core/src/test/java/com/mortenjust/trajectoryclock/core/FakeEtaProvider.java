@@ -0,0 +1,38 @@
+package com.mortenjust.trajectoryclock.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds on to every request until the test completes or fails it, so tests decide exactly when
+ * a result arrives.
+ */
+final class FakeEtaProvider implements EtaProvider {
+
+    private final List<Long> mRequestTimes = new ArrayList<>();
+    private final List<Callback> mCallbacks = new ArrayList<>();
+
+    @Override
+    public void requestEta(long nowMs, Callback callback) {
+        mRequestTimes.add(nowMs);
+        mCallbacks.add(callback);
+    }
+
+    int getPendingCount() {
+        return mCallbacks.size();
+    }
+
+    /**
+     * Answers the oldest pending request with {@code travelTimeMs}.
+     */
+    void complete(long travelTimeMs) {
+        mCallbacks.remove(0).onEta(mRequestTimes.remove(0), travelTimeMs);
+    }
+
+    /**
+     * Reports the oldest pending request as unavailable.
+     */
+    void fail() {
+        mCallbacks.remove(0).onEtaUnavailable(mRequestTimes.remove(0));
+    }
+}
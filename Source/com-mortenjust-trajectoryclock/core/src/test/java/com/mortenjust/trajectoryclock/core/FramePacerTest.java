@@ -0,0 +1,90 @@
+package com.mortenjust.trajectoryclock.core;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FramePacerTest {
+
+    private static final long BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(8);
+    private static final long VSYNC_NANOS = TimeUnit.SECONDS.toNanos(1) / 60;
+
+    @Test
+    public void drawsEveryOtherVsyncAtThirtyFps() {
+        FramePacer pacer = new FramePacer(BUDGET_NANOS, 30, 15);
+
+        int drawn = 0;
+        for (int i = 1; i <= 60; i++) {
+            if (pacer.onVsync(i * VSYNC_NANOS)) {
+                drawn++;
+            }
+        }
+
+        assertEquals(30, drawn);
+        assertEquals(0, pacer.getMissedFrameCount());
+    }
+
+    @Test
+    public void slowsDownOverBudgetAndRecoversUnderHalfOfIt() {
+        FramePacer pacer = new FramePacer(BUDGET_NANOS, 30, 15, 10);
+
+        long nowNanos = recordFrames(pacer, 0, 30, BUDGET_NANOS * 2);
+        assertEquals(15, pacer.getTargetFps());
+        nowNanos = recordFrames(pacer, nowNanos, 30, BUDGET_NANOS * 2);
+        assertEquals(10, pacer.getTargetFps());
+        nowNanos = recordFrames(pacer, nowNanos, 30, BUDGET_NANOS * 2);
+        assertEquals(10, pacer.getTargetFps());
+
+        recordFrames(pacer, nowNanos, 30, BUDGET_NANOS / 4);
+        assertEquals(15, pacer.getTargetFps());
+    }
+
+    @Test
+    public void lowBatteryPinsTheSlowestRate() {
+        FramePacer pacer = new FramePacer(BUDGET_NANOS, 30, 15);
+        pacer.setLowBattery(true);
+
+        recordFrames(pacer, 0, 30, 0);
+        assertEquals(15, pacer.getTargetFps());
+
+        pacer.setLowBattery(false);
+        recordFrames(pacer, 0, 30, 0);
+        assertEquals(30, pacer.getTargetFps());
+    }
+
+    @Test
+    public void reportsAchievedFpsAndMissedFrames() {
+        FramePacer pacer = new FramePacer(BUDGET_NANOS, 30);
+
+        long nowNanos = 0;
+        for (int i = 1; i <= 90; i++) {
+            nowNanos = i * VSYNC_NANOS;
+            // The main thread is busy for six vsyncs, so the frames due at 31, 33 and 35 are
+            // lost and drawing resumes on schedule at 37.
+            boolean busy = i > 30 && i <= 36;
+            if (!busy && pacer.onVsync(nowNanos)) {
+                pacer.recordFrame(nowNanos, 0);
+            }
+        }
+
+        assertEquals(3, pacer.getMissedFrameCount());
+        // The first whole second of frames: 28 frames from 3 to 63, measured from frame 1.
+        assertEquals(28f * 60 / 62, pacer.getAchievedFps(), 0.01f);
+        // Frames stay on odd vsyncs; 89 was drawn.
+        assertFalse(pacer.onVsync(nowNanos));
+        assertTrue(pacer.onVsync(nowNanos + VSYNC_NANOS));
+    }
+
+    private static long recordFrames(FramePacer pacer, long nowNanos, int frames,
+            long drawNanos) {
+        for (int i = 0; i < frames; i++) {
+            nowNanos += pacer.getFrameIntervalNanos();
+            pacer.recordFrame(nowNanos, drawNanos);
+        }
+        return nowNanos;
+    }
+}
@@ -0,0 +1,84 @@
+package com.mortenjust.trajectoryclock.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FrameStatsTest {
+
+    private static final long SECOND_MS = 1000;
+    private static final long START_MS = 1433116800000L;
+
+    @Test
+    public void aTickInTheSecondItWasScheduledForMissesNothing() {
+        FrameStats stats = new FrameStats();
+
+        stats.recordTick(START_MS, START_MS);
+        stats.recordTick(START_MS + SECOND_MS, START_MS + SECOND_MS + 999);
+
+        assertEquals(2, stats.getTickCount());
+        assertEquals(0, stats.getMissedSecondCount());
+    }
+
+    @Test
+    public void countsEverySecondATickLandedPast() {
+        FrameStats stats = new FrameStats();
+
+        // Due on the turn of the second, runs just after the next one turns.
+        stats.recordTick(START_MS, START_MS + SECOND_MS);
+        // Due late in a second, runs early in the next.
+        stats.recordTick(START_MS + 1900, START_MS + 2100);
+        // Stalled for a few seconds.
+        stats.recordTick(START_MS + 3 * SECOND_MS, START_MS + 6 * SECOND_MS + 500);
+
+        assertEquals(3, stats.getTickCount());
+        assertEquals(1 + 1 + 3, stats.getMissedSecondCount());
+    }
+
+    @Test
+    public void anEarlyTickMissesNothing() {
+        FrameStats stats = new FrameStats();
+
+        stats.recordTick(START_MS + SECOND_MS, START_MS + SECOND_MS - 1);
+
+        assertEquals(0, stats.getMissedSecondCount());
+    }
+
+    @Test
+    public void recordsEachPhaseAndTheFrame() {
+        FrameStats stats = new FrameStats("background", "hands");
+
+        for (int i = 0; i < 3; i++) {
+            stats.beginFrame();
+            stats.endPhase();
+            stats.endPhase();
+            // A phase the stats weren't told about is ignored rather than thrown on.
+            stats.endPhase();
+            stats.endFrame();
+        }
+
+        assertEquals(3, stats.getFrameHistogram().getCount());
+        assertEquals(3, stats.getPhaseHistogram(0).getCount());
+        assertEquals(3, stats.getPhaseHistogram(1).getCount());
+        assertTrue(stats.getLastFrameNanos() >= 0);
+        assertTrue(stats.getFrameHistogram().getMaxNanos()
+                >= stats.getPhaseHistogram(1).getMaxNanos());
+    }
+
+    @Test
+    public void resetClearsFramesAndTicks() {
+        FrameStats stats = new FrameStats("hands");
+        stats.beginFrame();
+        stats.endPhase();
+        stats.endFrame();
+        stats.recordTick(START_MS, START_MS + 2 * SECOND_MS);
+
+        stats.reset();
+
+        assertEquals(0, stats.getFrameHistogram().getCount());
+        assertEquals(0, stats.getPhaseHistogram(0).getCount());
+        assertEquals(0, stats.getTickCount());
+        assertEquals(0, stats.getMissedSecondCount());
+    }
+}
@@ -0,0 +1,51 @@
+package com.mortenjust.trajectoryclock.core;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class HandGeometryTest {
+
+    private static final float DELTA = 0.001f;
+
+    @Test
+    public void endpointsMatchTheRotations() {
+        HandGeometry geometry = new HandGeometry();
+        geometry.setUp(100, 100, 50, 80, 4, 90);
+
+        // 03:30:45, so the hour hand is at 105 degrees.
+        HandRotations r = new HandRotations();
+        r.setLocalTime(TimeUnit.HOURS.toMillis(3) + TimeUnit.MINUTES.toMillis(30)
+                + TimeUnit.SECONDS.toMillis(45));
+
+        int hourIndex = HandGeometry.hourIndex(r);
+        assertEndpoint(100, 100, 50, r.hoursRotation,
+                geometry.getHourX(hourIndex), geometry.getHourY(hourIndex));
+        assertEndpoint(100, 100, 80, r.minutesRotation,
+                geometry.getMinuteX(r.minute), geometry.getMinuteY(r.minute));
+        assertEndpoint(100, 100, 4, r.secondsRotation,
+                geometry.getSecondStartX(r.second), geometry.getSecondStartY(r.second));
+        assertEndpoint(100, 100, 90, r.secondsRotation,
+                geometry.getSecondEndX(r.second), geometry.getSecondEndY(r.second));
+    }
+
+    @Test
+    public void afternoonHoursShareTheMorningTable() {
+        HandRotations morning = new HandRotations();
+        morning.setLocalTime(TimeUnit.HOURS.toMillis(2) + TimeUnit.MINUTES.toMillis(10));
+        HandRotations afternoon = new HandRotations();
+        afternoon.setLocalTime(TimeUnit.HOURS.toMillis(14) + TimeUnit.MINUTES.toMillis(10));
+
+        assertEquals(130, HandGeometry.hourIndex(morning));
+        assertEquals(130, HandGeometry.hourIndex(afternoon));
+    }
+
+    private static void assertEndpoint(float cx, float cy, float length, float degrees,
+            float x, float y) {
+        double radians = Math.toRadians(degrees);
+        assertEquals(cx + length * Math.sin(radians), x, DELTA);
+        assertEquals(cy - length * Math.cos(radians), y, DELTA);
+    }
+}
@@ -0,0 +1,94 @@
+package com.mortenjust.trajectoryclock.core;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class LatencyHistogramTest {
+
+    private static final long MICRO_NANOS = TimeUnit.MICROSECONDS.toNanos(1);
+
+    @Test
+    public void bucketZeroHoldsEverythingUnderAMicrosecond() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        histogram.record(0);
+        histogram.record(MICRO_NANOS - 1);
+        histogram.record(-5);
+
+        assertEquals(3, histogram.getBucketCount(0));
+        assertEquals(0, histogram.getBucketCount(1));
+        assertEquals(1, histogram.getPercentileMicros(100));
+    }
+
+    @Test
+    public void powersOfTwoStartANewBucket() {
+        for (int i = 0; i < 31; i++) {
+            long edgeNanos = (1L << i) * MICRO_NANOS;
+            assertEquals("2^" + i + "us", i + 1, bucketOf(edgeNanos));
+            assertEquals("2^" + i + "us - 1ns", i, bucketOf(edgeNanos - 1));
+        }
+    }
+
+    @Test
+    public void durationsPastTheLastBucketOverflowIntoIt() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        histogram.record((1L << 30) * MICRO_NANOS);
+        histogram.record((1L << 31) * MICRO_NANOS);
+        histogram.record(Long.MAX_VALUE);
+
+        assertEquals(3, histogram.getBucketCount(31));
+        assertEquals(1L << 31, histogram.getPercentileMicros(100));
+        assertEquals(Long.MAX_VALUE, histogram.getMaxNanos());
+    }
+
+    @Test
+    public void percentilesReportTheUpperEdgeOfTheirBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileMicros(50));
+
+        // 90 frames of 100us and 10 of 3ms.
+        for (int i = 0; i < 90; i++) {
+            histogram.record(100 * MICRO_NANOS);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(3000 * MICRO_NANOS);
+        }
+
+        assertEquals(128, histogram.getPercentileMicros(50));
+        assertEquals(128, histogram.getPercentileMicros(90));
+        assertEquals(4096, histogram.getPercentileMicros(91));
+        assertEquals(4096, histogram.getPercentileMicros(99));
+        assertEquals(390 * MICRO_NANOS, histogram.getMeanNanos());
+        assertEquals(3000 * MICRO_NANOS, histogram.getMaxNanos());
+    }
+
+    @Test
+    public void resetEmptiesEveryBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(100 * MICRO_NANOS);
+        histogram.record(Long.MAX_VALUE);
+
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getBucketCount(7));
+        assertEquals(0, histogram.getBucketCount(31));
+        assertEquals(0, histogram.getMeanNanos());
+        assertEquals(0, histogram.getMaxNanos());
+        assertEquals(0, histogram.getPercentileMicros(99));
+    }
+
+    private static int bucketOf(long nanos) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(nanos);
+        for (int i = 0; ; i++) {
+            if (histogram.getBucketCount(i) != 0) {
+                return i;
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.mortenjust.trajectoryclock.core;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PixelShiftScheduleTest {
+
+    @Test
+    public void visitsEveryOffsetOneStepAtATime() {
+        PixelShiftSchedule schedule = new PixelShiftSchedule(3);
+        assertEquals(49, schedule.size());
+
+        Set<Integer> seen = new HashSet<>();
+        for (long minute = 0; minute < 200; minute++) {
+            int x = schedule.getShiftX(minute);
+            int y = schedule.getShiftY(minute);
+            assertTrue(Math.abs(x) <= 3 && Math.abs(y) <= 3);
+            seen.add(x * 100 + y);
+
+            int dx = Math.abs(schedule.getShiftX(minute + 1) - x);
+            int dy = Math.abs(schedule.getShiftY(minute + 1) - y);
+            assertTrue(dx + dy <= 1);
+        }
+        assertEquals(49, seen.size());
+    }
+
+    @Test
+    public void startsCenteredAndHandlesMinutesBeforeTheEpoch() {
+        PixelShiftSchedule schedule = new PixelShiftSchedule(2);
+
+        assertEquals(0, schedule.getShiftX(0));
+        assertEquals(0, schedule.getShiftY(0));
+        assertEquals(schedule.getShiftX(1), schedule.getShiftX(-1));
+        assertEquals(schedule.getShiftY(1), schedule.getShiftY(-1));
+    }
+
+    @Test
+    public void noShiftStaysCentered() {
+        PixelShiftSchedule schedule = new PixelShiftSchedule(0);
+
+        assertEquals(0, schedule.getShiftX(12345));
+        assertEquals(0, schedule.getShiftY(12345));
+    }
+}
@@ -0,0 +1,104 @@
+package com.mortenjust.trajectoryclock.core;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RawPixelFileTest {
+
+    @Test
+    public void mapsWhatWasWritten() throws IOException {
+        File file = tempFile();
+        ByteBuffer pixels = ByteBuffer.wrap(new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+        RawPixelFile.write(file, 42, 2, 1, 3, true, pixels);
+
+        RawPixelFile mapped = RawPixelFile.map(file, 42);
+        assertEquals(2, mapped.getWidth());
+        assertEquals(1, mapped.getHeight());
+        assertEquals(3, mapped.getFormat());
+        assertTrue(mapped.hasAlpha());
+        byte[] read = new byte[mapped.getPixels().remaining()];
+        mapped.getPixels().get(read);
+        assertEquals(8, read.length);
+        for (int i = 0; i < read.length; i++) {
+            assertEquals(i + 1, read[i]);
+        }
+        // The buffer written from is left as it was.
+        assertEquals(8, pixels.remaining());
+    }
+
+    @Test
+    public void copiesFromASourceIntoTheFile() throws IOException {
+        File file = tempFile();
+        RawPixelFile.write(file, 42, 1, 1, 0, false, 4, new RawPixelFile.PixelSource() {
+            @Override
+            public void copyTo(ByteBuffer buffer) {
+                buffer.put(new byte[] {9, 8, 7, 6});
+            }
+        });
+
+        RawPixelFile mapped = RawPixelFile.map(file, 42);
+        assertFalse(mapped.hasAlpha());
+        assertEquals(4, mapped.getPixels().remaining());
+        assertEquals(9, mapped.getPixels().get(0));
+        assertEquals(6, mapped.getPixels().get(3));
+    }
+
+    @Test
+    public void aSourceThatCopiesTooLittleWritesNothing() throws IOException {
+        File file = tempFile();
+        try {
+            RawPixelFile.write(file, 42, 1, 1, 0, false, 4, new RawPixelFile.PixelSource() {
+                @Override
+                public void copyTo(ByteBuffer buffer) {
+                    buffer.put((byte) 1);
+                }
+            });
+            fail();
+        } catch (IOException expected) {
+        }
+
+        assertNull(RawPixelFile.map(file, 42));
+    }
+
+    @Test
+    public void ignoresFilesWithAnotherStamp() throws IOException {
+        File file = tempFile();
+        RawPixelFile.write(file, 1, 1, 1, 0, false, ByteBuffer.allocate(4));
+
+        assertNull(RawPixelFile.map(file, 2));
+    }
+
+    @Test
+    public void ignoresMissingAndTruncatedFiles() throws IOException {
+        File file = tempFile();
+        assertNull(RawPixelFile.map(file, 0));
+
+        RawPixelFile.write(file, 0, 1, 1, 0, false, ByteBuffer.allocate(4));
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        out.setLength(RawPixelFile.HEADER_BYTES + 2);
+        out.close();
+        assertNull(RawPixelFile.map(file, 0));
+
+        out = new RandomAccessFile(file, "rw");
+        out.setLength(3);
+        out.close();
+        assertNull(RawPixelFile.map(file, 0));
+    }
+
+    private static File tempFile() throws IOException {
+        File file = File.createTempFile("RawPixelFileTest", ".raw");
+        file.delete();
+        file.deleteOnExit();
+        return file;
+    }
+}
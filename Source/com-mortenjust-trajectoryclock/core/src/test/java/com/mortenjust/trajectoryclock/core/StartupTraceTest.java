@@ -0,0 +1,50 @@
+package com.mortenjust.trajectoryclock.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StartupTraceTest {
+
+    @Test
+    public void timesPhasesAndMilestonesUntilTheFirstFrame() {
+        StartupTrace trace = new StartupTrace(1000);
+
+        trace.beginPhase("paints", 1100);
+        // Beginning a phase ends the one in progress.
+        trace.beginPhase("sprites", 1300);
+        trace.endPhase(1600);
+        trace.milestone("background", 2000);
+        trace.beginPhase("first frame", 2500);
+        assertEquals(-1, trace.getTotalNanos());
+        trace.finish(2900);
+
+        assertTrue(trace.isFinished());
+        assertEquals(1900, trace.getTotalNanos());
+        assertEquals(200 + 300 + 400, trace.getPhaseNanos());
+        assertEquals(4, trace.getEntryCount());
+        assertEquals("sprites", trace.getEntryName(1));
+        assertEquals(300, trace.getEntryNanos(1));
+        assertEquals(300, trace.getEntryOffsetNanos(1));
+        assertTrue(trace.isMilestone(2));
+        assertEquals(1000, trace.getEntryOffsetNanos(2));
+        assertEquals(0, trace.getEntryNanos(2));
+    }
+
+    @Test
+    public void ignoresEverythingAfterTheFirstFrame() {
+        StartupTrace trace = new StartupTrace(0);
+        trace.beginPhase("first frame", 10);
+        trace.finish(20);
+
+        trace.finish(50);
+        trace.beginPhase("later", 60);
+        trace.milestone("later", 70);
+
+        assertEquals(20, trace.getTotalNanos());
+        assertEquals(1, trace.getEntryCount());
+        assertFalse(trace.hasOpenPhase());
+    }
+}
@@ -0,0 +1,53 @@
+package com.mortenjust.trajectoryclock.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SurfaceReadyStatsTest {
+
+    @Test
+    public void measuresFirstFrameAndFirstFullFrameSeparately() {
+        SurfaceReadyStats stats = new SurfaceReadyStats();
+
+        stats.onSurfaceChanged(1000);
+        stats.onFrame(3000, false);
+        stats.onFrame(5000, false);
+        stats.onFrame(9000, true);
+        stats.onFrame(10000, true);
+
+        assertEquals(1, stats.getFirstFrameHistogram().getCount());
+        assertEquals(2000, stats.getFirstFrameHistogram().getMaxNanos());
+        assertEquals(1, stats.getFirstFullFrameHistogram().getCount());
+        assertEquals(8000, stats.getFirstFullFrameHistogram().getMaxNanos());
+        assertEquals(2, stats.getPlaceholderFrameCount());
+    }
+
+    @Test
+    public void aFullFirstFrameCountsForBoth() {
+        SurfaceReadyStats stats = new SurfaceReadyStats();
+
+        stats.onFrame(500, true);
+        stats.onSurfaceChanged(1000);
+        stats.onFrame(4000, true);
+
+        assertEquals(3000, stats.getFirstFrameHistogram().getMaxNanos());
+        assertEquals(3000, stats.getFirstFullFrameHistogram().getMaxNanos());
+        assertEquals(0, stats.getPlaceholderFrameCount());
+    }
+
+    @Test
+    public void aNewSurfaceRestartsTheMeasurement() {
+        SurfaceReadyStats stats = new SurfaceReadyStats();
+
+        stats.onSurfaceChanged(1000);
+        stats.onFrame(2000, false);
+        stats.onSurfaceChanged(10000);
+        stats.onFrame(11000, false);
+        stats.onFrame(15000, true);
+
+        assertEquals(2, stats.getFirstFrameHistogram().getCount());
+        assertEquals(1, stats.getFirstFullFrameHistogram().getCount());
+        assertEquals(5000, stats.getFirstFullFrameHistogram().getMaxNanos());
+    }
+}
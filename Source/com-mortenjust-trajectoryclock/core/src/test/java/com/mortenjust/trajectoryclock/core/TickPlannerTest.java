@@ -0,0 +1,146 @@
+package com.mortenjust.trajectoryclock.core;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TickPlannerTest {
+
+    private static final long START_MS = 1433116800000L;
+
+    @Test
+    public void waitsForTheNextTurnOfTheSecond() {
+        TickPlanner planner = new TickPlanner();
+
+        assertEquals(700, planner.scheduleNext(START_MS + 300));
+        assertEquals(START_MS + 1000, planner.getScheduledMs());
+        // Exactly on the turn of a second waits for the next one.
+        assertEquals(1000, planner.scheduleNext(START_MS + 1000));
+        assertEquals(START_MS + 2000, planner.getScheduledMs());
+    }
+
+    @Test
+    public void correctsForAHandlerThatRunsLate() {
+        TickPlanner planner = new TickPlanner();
+
+        long nowMs = START_MS + 300;
+        long latenessMs = 0;
+        for (int i = 0; i < 60; i++) {
+            long delayMs = planner.scheduleNext(nowMs);
+            nowMs += delayMs + 20;
+            latenessMs = planner.onWakeUp(nowMs);
+        }
+
+        assertEquals(20, planner.getMeanWakeUpLatenessMs(), 0.5f);
+        assertEquals(20 - TickPlanner.TARGET_LATENESS_MS, planner.getCorrectionMs());
+        assertEquals(TickPlanner.TARGET_LATENESS_MS, latenessMs);
+        assertEquals(60, planner.getTickCount());
+        assertEquals(0, planner.getEarlyWakeUpCount());
+        assertEquals(0, planner.getMissedSecondCount());
+    }
+
+    @Test
+    public void capsTheCorrection() {
+        TickPlanner planner = new TickPlanner();
+
+        long nowMs = START_MS + 300;
+        long latenessMs = 0;
+        for (int i = 0; i < 60; i++) {
+            long delayMs = planner.scheduleNext(nowMs);
+            nowMs += delayMs + 200;
+            latenessMs = planner.onWakeUp(nowMs);
+        }
+
+        assertEquals(TickPlanner.MAX_CORRECTION_MS, planner.getCorrectionMs());
+        assertEquals(200 - TickPlanner.MAX_CORRECTION_MS, latenessMs);
+    }
+
+    @Test
+    public void neverAsksForANegativeDelay() {
+        TickPlanner planner = new TickPlanner();
+        long nowMs = START_MS + 300;
+        for (int i = 0; i < 60; i++) {
+            nowMs += planner.scheduleNext(nowMs) + 30;
+            planner.onWakeUp(nowMs);
+        }
+
+        // Ten milliseconds before the second is less than the usual correction.
+        assertEquals(0, planner.scheduleNext(START_MS + 100 * 1000 - 10));
+        assertEquals(10, planner.getCorrectionMs());
+    }
+
+    @Test
+    public void anEarlyWakeUpWaitsOutTheSecondWithoutCorrection() {
+        TickPlanner planner = new TickPlanner();
+        long nowMs = START_MS + 300;
+        for (int i = 0; i < 60; i++) {
+            nowMs += planner.scheduleNext(nowMs) + 20;
+            planner.onWakeUp(nowMs);
+        }
+        long ticks = planner.getTickCount();
+
+        // The uptime clock ran fast against the wall clock, so the wakeup is 40ms early.
+        long scheduledMs = planner.getScheduledMs() + 1000;
+        long delayMs = planner.scheduleNext(nowMs);
+        assertTrue(planner.getCorrectionMs() > 0);
+        nowMs = scheduledMs - 40;
+
+        assertEquals(-40, planner.onWakeUp(nowMs));
+        assertEquals(0, planner.getCorrectionMs());
+        assertEquals(1, planner.getEarlyWakeUpCount());
+        assertEquals(ticks, planner.getTickCount());
+        assertEquals(scheduledMs, planner.getScheduledMs());
+
+        // The repost is for the same second.
+        assertEquals(3, planner.onWakeUp(nowMs + 40 + 3));
+        assertEquals(ticks + 1, planner.getTickCount());
+        assertEquals(0, planner.getMissedSecondCount());
+        assertTrue(delayMs < 1000);
+    }
+
+    @Test
+    public void aClockSetBackWaitsNoMoreThanATick() {
+        TickPlanner planner = new TickPlanner();
+        long nowMs = START_MS + 300;
+        for (int i = 0; i < 60; i++) {
+            nowMs += planner.scheduleNext(nowMs) + 20;
+            planner.onWakeUp(nowMs);
+        }
+        float meanLatenessMs = planner.getMeanWakeUpLatenessMs();
+        long ticks = planner.getTickCount();
+        planner.scheduleNext(nowMs);
+
+        // The wall clock is set back an hour while the wakeup is pending.
+        long setBackMs = planner.getScheduledMs() - TimeUnit.HOURS.toMillis(1) - 400;
+
+        assertEquals(-400, planner.onWakeUp(setBackMs));
+        assertEquals(setBackMs + 400, planner.getScheduledMs());
+        assertEquals(0, planner.getCorrectionMs());
+        assertEquals(1, planner.getClockSetBackCount());
+        assertEquals(ticks, planner.getTickCount());
+        assertEquals(meanLatenessMs, planner.getMeanWakeUpLatenessMs(), 0f);
+
+        // The repost ticks for the second after the new time.
+        assertEquals(3, planner.onWakeUp(setBackMs + 400 + 3));
+        assertEquals(ticks + 1, planner.getTickCount());
+        assertEquals(0, planner.getMissedSecondCount());
+    }
+
+    @Test
+    public void countsTheSecondsAStalledWakeUpSkipped() {
+        TickPlanner planner = new TickPlanner();
+        planner.scheduleNext(START_MS + 300);
+
+        assertEquals(2300, planner.onWakeUp(START_MS + 1000 + 2300));
+
+        assertEquals(2, planner.getMissedSecondCount());
+        assertEquals(1, planner.getLatenessHistogram().getCount());
+        // The next wakeup aims at the second after the stall, not the ones it skipped, and the
+        // stall moves it no more than the cap.
+        assertEquals(700 - TickPlanner.MAX_CORRECTION_MS, planner.scheduleNext(START_MS + 3300));
+        assertEquals(START_MS + 4000, planner.getScheduledMs());
+    }
+}
@@ -0,0 +1,94 @@
+package com.mortenjust.trajectoryclock.core;
+
+import org.junit.Test;
+
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class TrajectoryTimeTest {
+
+    private static final float DELTA = 0.0001f;
+
+    @Test
+    public void shiftedRotationsAreEtaAhead() {
+        TrajectoryTime trajectoryTime = new TrajectoryTime(75);
+
+        // 1970-01-01 10:00:00 UTC, so the trajectory time is 11:15:00.
+        trajectoryTime.update(TimeUnit.HOURS.toMillis(10), 0);
+
+        assertEquals(300f, trajectoryTime.getCurrentRotations().hoursRotation, DELTA);
+        assertEquals(0f, trajectoryTime.getCurrentRotations().minutesRotation, DELTA);
+        assertEquals(337.5f, trajectoryTime.getShiftedRotations().hoursRotation, DELTA);
+        assertEquals(90f, trajectoryTime.getShiftedRotations().minutesRotation, DELTA);
+    }
+
+    @Test
+    public void minuteKeyTurnsWithTheShiftedMinuteForAnEtaOfPartMinutes() {
+        TrajectoryTime trajectoryTime = new TrajectoryTime(0);
+        trajectoryTime.setEtaOffsetMs(
+                TimeUnit.MINUTES.toMillis(12) + TimeUnit.SECONDS.toMillis(20));
+
+        // 10:00:30 UTC; the trajectory time is 10:12:50.
+        long nowMs = TimeUnit.HOURS.toMillis(10) + TimeUnit.SECONDS.toMillis(30);
+        trajectoryTime.update(nowMs, 0);
+        long epochMinute = trajectoryTime.getEpochMinute();
+        long minuteKey = trajectoryTime.getMinuteKey();
+
+        // 10:00:45, 10:13:05: only the shifted minute hand moved.
+        trajectoryTime.update(nowMs + TimeUnit.SECONDS.toMillis(15), 0);
+        assertEquals(13, trajectoryTime.getShiftedRotations().minute);
+        assertEquals(epochMinute, trajectoryTime.getEpochMinute());
+        assertNotEquals(minuteKey, trajectoryTime.getMinuteKey());
+        minuteKey = trajectoryTime.getMinuteKey();
+
+        // 10:00:59, 10:13:19: neither moved.
+        trajectoryTime.update(nowMs + TimeUnit.SECONDS.toMillis(29), 0);
+        assertEquals(minuteKey, trajectoryTime.getMinuteKey());
+
+        // 10:01:00, 10:13:20: the current minute hand moved.
+        trajectoryTime.update(nowMs + TimeUnit.SECONDS.toMillis(30), 0);
+        assertEquals(13, trajectoryTime.getShiftedRotations().minute);
+        assertNotEquals(minuteKey, trajectoryTime.getMinuteKey());
+    }
+
+    @Test
+    public void zoneOffsetIsApplied() {
+        TrajectoryTime trajectoryTime = new TrajectoryTime(0);
+
+        // 23:59:30 UTC is 01:59:30 at UTC+2.
+        long nowMs = TimeUnit.HOURS.toMillis(24) - TimeUnit.SECONDS.toMillis(30);
+        trajectoryTime.update(nowMs, (int) TimeUnit.HOURS.toMillis(2));
+
+        HandRotations r = trajectoryTime.getCurrentRotations();
+        assertEquals(1, r.hour);
+        assertEquals(59, r.minute);
+        assertEquals(30, r.second);
+        assertEquals(180f, r.secondsRotation, DELTA);
+    }
+
+    @Test
+    public void timesBeforeTheEpochWrapAround() {
+        HandRotations r = new HandRotations();
+        r.setLocalTime(-TimeUnit.SECONDS.toMillis(1));
+
+        assertEquals(23, r.hour);
+        assertEquals(59, r.minute);
+        assertEquals(59, r.second);
+    }
+
+    @Test
+    public void trajectoryUsesTheOffsetAtTheEtaAcrossDaylightSaving() {
+        TimeZone zone = TimeZone.getTimeZone("Europe/Copenhagen");
+        TrajectoryTime trajectoryTime = new TrajectoryTime(75);
+
+        // 2015-03-29 00:30 UTC is 01:30 CET; 75 minutes later it is 03:45 CEST.
+        trajectoryTime.update(1427589000000L, zone);
+
+        assertEquals(1, trajectoryTime.getCurrentRotations().hour);
+        assertEquals(3, trajectoryTime.getShiftedRotations().hour);
+        assertEquals(45, trajectoryTime.getShiftedRotations().minute);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mortenjust.trajectoryclock.harness;
+
+import com.mortenjust.trajectoryclock.core.WallClock;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Drives a frame callback through a simulated clock on the host and measures the time per frame
+ * and the heap the frames allocated. Allocations are read from HotSpot's per-thread counter, so
+ * this is for host-side tests and benchmarks only; it doesn't work on a device, and the faces only
+ * depend on this module from their unit tests.
+ */
+public final class RenderHarness {
+
+    public interface Frame {
+        void draw(long timeMs);
+    }
+
+    public static final class Result {
+        public final String label;
+        public final int frames;
+        public final long nanosPerFrame;
+        /* Over all measured frames, so a single allocation shows; -1 when the JVM can't count. */
+        public final long allocatedBytes;
+
+        Result(String label, int frames, long nanosPerFrame, long allocatedBytes) {
+            this.label = label;
+            this.frames = frames;
+            this.nanosPerFrame = nanosPerFrame;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return label + ": " + frames + " frames, " + nanosPerFrame + " ns/frame, "
+                    + (allocatedBytes < 0 ? "unknown" : allocatedBytes) + " bytes allocated";
+        }
+    }
+
+    private RenderHarness() {
+    }
+
+    /**
+     * Draws {@code warmupFrames} and then {@code frames} measured frames, pinning
+     * {@link WallClock} to {@code startMs} and advancing it by {@code stepMs} every frame.
+     */
+    public static Result run(String label, long startMs, long stepMs, int warmupFrames,
+            int frames, Frame frame) {
+        long timeMs = startMs;
+        try {
+            for (int i = 0; i < warmupFrames; i++) {
+                WallClock.setFixedTimeMillis(timeMs);
+                frame.draw(timeMs);
+                timeMs += stepMs;
+            }
+
+            long startBytes = allocatedBytes();
+            long startNanos = System.nanoTime();
+            for (int i = 0; i < frames; i++) {
+                WallClock.setFixedTimeMillis(timeMs);
+                frame.draw(timeMs);
+                timeMs += stepMs;
+            }
+            long nanos = System.nanoTime() - startNanos;
+            long bytes = allocatedBytes() - startBytes;
+
+            return new Result(label, frames, nanos / frames, startBytes < 0 ? -1 : bytes);
+        } finally {
+            WallClock.useSystemTime();
+        }
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threadBean)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,266 @@
+package com.mortenjust.trajectoryclock.harness;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.os.Looper;
+import android.support.wearable.watchface.CanvasWatchFaceService;
+import android.view.SurfaceHolder;
+
+import com.mortenjust.trajectoryclock.core.StartupTrace;
+import com.mortenjust.trajectoryclock.core.WallClock;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+import org.robolectric.shadows.ShadowPausedAsyncTask;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.TimeZone;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Mockito.mock;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Drives a watch face engine against an offscreen canvas on the host. Each face's
+ * RenderHarnessTest extends this with its service class and a way to read an engine's startup
+ * trace; the faces compile this directory into their unit tests.
+ *
+ * <p>Prints ns/frame and the bytes allocated for interactive and ambient mode and fails if any
+ * steady-state frame allocates. For faces that can draw their hands either way, also prints
+ * ns/frame with hand sprites and with shapes, the before and after of drawing the hands from
+ * sprites; host timings only compare the two, they don't predict a watch.
+ *
+ * <p>The golden test draws a few fixed times in both modes to {@code build/render-harness} and
+ * compares each pixel for pixel with the PNG of the same name in
+ * {@code src/test/resources/goldens}; a missing golden fails too. It is ignored until the goldens
+ * are committed: take out the {@code @Ignore}, run the face's unit tests with
+ * {@code -PrecordGoldens} to write them, and commit them.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public abstract class WatchFaceRenderTest {
+
+    private static final int SIZE = 320;
+    private static final int WARMUP_FRAMES = 500;
+    private static final int FRAMES = 5000;
+
+    /*
+     * Most the startup phases of an engine may take together on the host, from onCreateEngine to
+     * its first frame, after another engine has loaded the classes and the disk cache. Counts
+     * the background decode, which the test runs inline. Generous, to catch a regression rather
+     * than measure.
+     */
+    private static final long STARTUP_BUDGET_MS = 250;
+
+    /* 2015-06-01 00:00:00 UTC. */
+    private static final long START_MS = 1433116800000L;
+    private static final long[] GOLDEN_TIMES_MS = {
+            START_MS + TimeUnit.HOURS.toMillis(10) + TimeUnit.MINUTES.toMillis(8)
+                    + TimeUnit.SECONDS.toMillis(30),
+            START_MS + TimeUnit.HOURS.toMillis(15) + TimeUnit.MINUTES.toMillis(45),
+            START_MS + TimeUnit.HOURS.toMillis(23) + TimeUnit.MINUTES.toMillis(59)
+                    + TimeUnit.SECONDS.toMillis(59),
+    };
+
+    private static final File OUTPUT_DIR = new File("build/render-harness");
+    private static final File GOLDEN_DIR = new File("src/test/resources/goldens");
+    /* Set by the build from -PrecordGoldens. */
+    private static final boolean RECORD_GOLDENS = Boolean.getBoolean("harness.recordGoldens");
+
+    private final String mFaceName;
+    private final Class<? extends CanvasWatchFaceService> mServiceClass;
+
+    private CanvasWatchFaceService.Engine mEngine;
+    private Bitmap mBitmap;
+    private Canvas mCanvas;
+    private Rect mBounds;
+
+    /**
+     * @param faceName names the face in the output and the golden files
+     */
+    protected WatchFaceRenderTest(String faceName,
+            Class<? extends CanvasWatchFaceService> serviceClass) {
+        mFaceName = faceName;
+        mServiceClass = serviceClass;
+    }
+
+    @Before
+    public void setUp() {
+        // The engine picks up the default zone when it is created.
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        CanvasWatchFaceService service = Robolectric.setupService(mServiceClass);
+        mEngine = service.onCreateEngine();
+
+        // Run the engine's background work, e.g. loading the background, right away, as it
+        // would have finished long before the frames under test on a watch.
+        ShadowPausedAsyncTask.overrideExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+
+        SurfaceHolder holder = mock(SurfaceHolder.class);
+        mEngine.onCreate(holder);
+        mEngine.onSurfaceChanged(holder, PixelFormat.RGBA_8888, SIZE, SIZE);
+        shadowOf(Looper.getMainLooper()).idle();
+
+        mBitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        mCanvas = new Canvas(mBitmap);
+        mBounds = new Rect(0, 0, SIZE, SIZE);
+    }
+
+    @After
+    public void tearDown() {
+        mEngine.onDestroy();
+        WallClock.useSystemTime();
+    }
+
+    @Test
+    public void interactiveFrames() {
+        assertFrames(run("interactive", TimeUnit.SECONDS.toMillis(1)));
+    }
+
+    @Test
+    public void ambientFrames() {
+        mEngine.onAmbientModeChanged(true);
+        assertFrames(run("ambient", TimeUnit.MINUTES.toMillis(1)));
+    }
+
+    @Test
+    public void handSpritesAgainstShapes() {
+        assumeTrue("The face only draws one way", setUseHandSprites(mEngine, false));
+        RenderHarness.Result interactiveShapes = run("interactive shapes",
+                TimeUnit.SECONDS.toMillis(1));
+        setUseHandSprites(mEngine, true);
+        RenderHarness.Result interactiveSprites = run("interactive sprites",
+                TimeUnit.SECONDS.toMillis(1));
+
+        mEngine.onAmbientModeChanged(true);
+        setUseHandSprites(mEngine, false);
+        RenderHarness.Result ambientShapes = run("ambient shapes", TimeUnit.MINUTES.toMillis(1));
+        setUseHandSprites(mEngine, true);
+        RenderHarness.Result ambientSprites = run("ambient sprites",
+                TimeUnit.MINUTES.toMillis(1));
+
+        System.out.println(interactiveShapes);
+        System.out.println(interactiveSprites);
+        System.out.println(ambientShapes);
+        System.out.println(ambientSprites);
+    }
+
+    @Ignore("No goldens are committed yet; they have to be recorded against a real SDK build")
+    @Test
+    public void goldenImages() throws IOException {
+        OUTPUT_DIR.mkdirs();
+        if (RECORD_GOLDENS) {
+            GOLDEN_DIR.mkdirs();
+        }
+        for (long timeMs : GOLDEN_TIMES_MS) {
+            drawAt(timeMs, false);
+            drawAt(timeMs, true);
+        }
+    }
+
+    @Test
+    public void startupWithinBudget() {
+        // Take the setUp engine to its first frame, as an earlier run of the face would have on a
+        // watch, so the engine under test doesn't pay for loading classes or the disk cache.
+        mEngine.onDraw(mCanvas, mBounds);
+
+        CanvasWatchFaceService service = Robolectric.setupService(mServiceClass);
+        SurfaceHolder holder = mock(SurfaceHolder.class);
+        CanvasWatchFaceService.Engine engine = service.onCreateEngine();
+        engine.onCreate(holder);
+        engine.onSurfaceChanged(holder, PixelFormat.RGBA_8888, SIZE, SIZE);
+        shadowOf(Looper.getMainLooper()).idle();
+        engine.onDraw(mCanvas, mBounds);
+        StartupTrace trace = getStartupTrace(engine);
+        engine.onDestroy();
+
+        PrintWriter out = new PrintWriter(System.out);
+        trace.dump(mFaceName + " ", out);
+        out.flush();
+        assertTrue("The first frame didn't finish the trace", trace.isFinished());
+        long phaseMs = TimeUnit.NANOSECONDS.toMillis(trace.getPhaseNanos());
+        assertTrue("Startup phases took " + phaseMs + "ms", phaseMs <= STARTUP_BUDGET_MS);
+    }
+
+    /**
+     * Returns the startup trace of an engine the face's service created.
+     */
+    protected abstract StartupTrace getStartupTrace(CanvasWatchFaceService.Engine engine);
+
+    /**
+     * Switches an engine between drawing its hands from sprites and from shapes, and returns
+     * whether it could. Faces that only draw one way keep this default.
+     */
+    protected boolean setUseHandSprites(CanvasWatchFaceService.Engine engine,
+            boolean useHandSprites) {
+        return false;
+    }
+
+    private RenderHarness.Result run(String mode, long stepMs) {
+        return RenderHarness.run(mFaceName + " " + mode, START_MS, stepMs, WARMUP_FRAMES, FRAMES,
+                new RenderHarness.Frame() {
+                    @Override
+                    public void draw(long timeMs) {
+                        mEngine.onDraw(mCanvas, mBounds);
+                    }
+                });
+    }
+
+    private static void assertFrames(RenderHarness.Result result) {
+        System.out.println(result);
+        assertTrue(result.label + " took no time", result.nanosPerFrame > 0);
+        // Every face keeps onDraw free of allocations once it has warmed up.
+        assumeTrue("This JVM can't count allocations", result.allocatedBytes >= 0);
+        assertEquals(result.label + " bytes allocated", 0, result.allocatedBytes);
+    }
+
+    private void drawAt(long timeMs, boolean ambient) throws IOException {
+        mEngine.onAmbientModeChanged(ambient);
+        WallClock.setFixedTimeMillis(timeMs);
+        mEngine.onDraw(mCanvas, mBounds);
+
+        String name = mFaceName + "-" + timeMs + (ambient ? "-ambient" : "") + ".png";
+        writePng(new File(OUTPUT_DIR, name));
+
+        File golden = new File(GOLDEN_DIR, name);
+        if (RECORD_GOLDENS) {
+            writePng(golden);
+            return;
+        }
+        assertTrue("No golden " + golden + "; run the unit tests with -PrecordGoldens",
+                golden.exists());
+        assertTrue(name + " differs from its golden",
+                mBitmap.sameAs(BitmapFactory.decodeFile(golden.getPath())));
+    }
+
+    private void writePng(File file) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            mBitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+        } finally {
+            out.close();
+        }
+    }
+}